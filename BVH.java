@@ -0,0 +1,165 @@
+import gmaths.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A bounding volume hierarchy over the world-space boxes of the ModelNodes in a scene graph,
+ * for raycasts. The tree is built once; when nodes move, refit() recomputes the boxes of
+ * the ones that did and of the tree nodes above them, without rebuilding. That keeps it
+ * correct for animation, though if things move a long way from where they were built it
+ * gets slower to search.
+ * <p>
+ * A raycast can stop at the boxes, or go on into each candidate's mesh through its
+ * TriangleBVH to find the exact triangle.
+ */
+public class BVH implements BoxTree.ItemTest {
+
+  private static final int LEAF_SIZE = 2;
+
+  private final ModelNode[] nodes;
+  private final int[] versions;
+  private final float[] bounds;
+  private final BoxTree tree;
+  private final float[] hitT = new float[1];
+  private final Vec3 rayOrigin = new Vec3(), rayDir = new Vec3();
+  private boolean triangles;
+  private int hitTriangle;
+
+  /**
+   * Builds the hierarchy over the ModelNodes at and below root, which must be up to date.
+   */
+  public BVH(SGNode root) {
+    List<ModelNode> found = new ArrayList<ModelNode>();
+    gather(root, found);
+    nodes = found.toArray(new ModelNode[found.size()]);
+    versions = new int[nodes.length];
+    bounds = new float[nodes.length*6];
+    for (int i=0; i<nodes.length; i++) {
+      computeBounds(i);
+    }
+    tree = new BoxTree(bounds, nodes.length, LEAF_SIZE);
+  }
+
+  // The ModelNodes that draw, i.e. the merged nodes of a baked StaticNode rather than the originals
+  private static void gather(SGNode node, List<ModelNode> found) {
+    if (node instanceof StaticNode && ((StaticNode)node).isBaked()) {
+      StaticNode staticNode = (StaticNode)node;
+      found.addAll(staticNode.getBakedNodes());
+      for (SGNode unbaked : staticNode.getUnbakedNodes()) {
+        gather(unbaked, found);
+      }
+      return;
+    }
+    if (node instanceof ModelNode) {
+      found.add((ModelNode)node);
+    }
+    for (int i=0; i<node.children.size(); i++) {
+      gather(node.children.get(i), found);
+    }
+  }
+
+  // The node's mesh box in world space
+  private void computeBounds(int i) {
+    ModelNode node = nodes[i];
+    versions[i] = node.getBoundsVersion();
+    Mesh mesh = node.model.getMesh();
+    Scratch scratch = Scratch.get();
+    scratch.push();
+    Vec3 min = scratch.vec3(), max = scratch.vec3();
+    node.worldTransform.transformBox(mesh.getBoundsMin(), mesh.getBoundsMax(), min, max);
+    bounds[i*6] = min.x;
+    bounds[i*6+1] = min.y;
+    bounds[i*6+2] = min.z;
+    bounds[i*6+3] = max.x;
+    bounds[i*6+4] = max.y;
+    bounds[i*6+5] = max.z;
+    scratch.pop();
+  }
+
+  /**
+   * Brings the hierarchy up to date with nodes that have moved since it was built or last refit.
+   *
+   * @return The number of nodes that had moved
+   */
+  public int refit() {
+    int moved = 0;
+    for (int i=0; i<nodes.length; i++) {
+      if (versions[i] != nodes[i].getBoundsVersion()) {
+        computeBounds(i);
+        tree.itemChanged(i);
+        moved++;
+      }
+    }
+    if (moved > 0) {
+      tree.refit();
+    }
+    return moved;
+  }
+
+  /**
+   * Finds the nearest triangle along a ray.
+   *
+   * @return The hit, or null if the ray hits nothing
+   */
+  public RaycastHit raycast(Vec3 origin, Vec3 dir) {
+    return raycast(origin, dir, true);
+  }
+
+  /**
+   * Finds the nearest node along a ray.
+   *
+   * @param origin The start of the ray, in world space
+   * @param dir The direction of the ray, which need not be normalised
+   * @param triangles true to test the nodes' triangles, false to stop at their bounding boxes
+   * @return The hit, or null if the ray hits nothing
+   */
+  public RaycastHit raycast(Vec3 origin, Vec3 dir, boolean triangles) {
+    float length = dir.length();
+    if (length == 0) {
+      return null;
+    }
+    rayOrigin.set(origin);
+    rayDir.set(dir.x/length, dir.y/length, dir.z/length);
+    this.triangles = triangles;
+    hitTriangle = -1;
+    int item = tree.raycast(rayOrigin.x, rayOrigin.y, rayOrigin.z, rayDir.x, rayDir.y, rayDir.z,
+                            Float.POSITIVE_INFINITY, this, hitT);
+    if (item < 0) {
+      return null;
+    }
+    float t = hitT[0];
+    Vec3 point = new Vec3(rayOrigin.x+rayDir.x*t, rayOrigin.y+rayDir.y*t, rayOrigin.z+rayDir.z*t);
+    return new RaycastHit(nodes[item], t, hitTriangle, point);
+  }
+
+  // Called for each node whose box the ray hits, nearest boxes first
+  public float intersect(int item, float maxT) {
+    if (!triangles) {
+      return BoxTree.slab(bounds, item*6, rayOrigin.x, rayOrigin.y, rayOrigin.z,
+                          1/BoxTree.nonZero(rayDir.x), 1/BoxTree.nonZero(rayDir.y), 1/BoxTree.nonZero(rayDir.z), maxT);
+    }
+    // Into model space: with the direction transformed but not normalised, distances there
+    // are world distances
+    Scratch scratch = Scratch.get();
+    scratch.push();
+    Mat4 inverse = Mat4.inverse(nodes[item].worldTransform, scratch.mat4());
+    Vec3 origin = inverse.transformPoint(rayOrigin, scratch.vec3());
+    Vec3 dir = inverse.transformDirection(rayDir, scratch.vec3());
+    int triangle = nodes[item].model.getMesh().getTriangleBVH().raycast(origin, dir, maxT, hitT);
+    float t = hitT[0];
+    scratch.pop();
+    if (triangle < 0) {
+      return -1;
+    }
+    hitTriangle = triangle;   // every hit returned is nearer than the last, so the last one kept is the nearest
+    return t;
+  }
+
+  /**
+   * @return The number of ModelNodes in the hierarchy
+   */
+  public int size() {
+    return nodes.length;
+  }
+
+}
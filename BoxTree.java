@@ -0,0 +1,239 @@
+import java.util.Arrays;
+
+/**
+ * A bounding volume hierarchy over axis-aligned boxes, in flat arrays with the nodes in
+ * pre-order, so a node's left child comes straight after it. The boxes belong to the
+ * caller, 6 floats each (min x,y,z then max x,y,z); after changing some, refit() brings
+ * the tree back up to date without rebuilding it.
+ * <p>
+ * Used by BVH for the models in a scene and TriangleBVH for the triangles in a mesh.
+ */
+class BoxTree {
+
+  /**
+   * The exact test for one item, once the ray has hit its box.
+   */
+  interface ItemTest {
+    /**
+     * @return The distance along the ray to the item, or a negative number if it misses
+     *         or is further away than maxT
+     */
+    float intersect(int item, float maxT);
+  }
+
+  private final float[] itemBounds;
+  private final int leafSize;
+  private int[] order;            // the items, each leaf's together
+  private int[] leafOf;           // the leaf holding each item
+  private float[] bounds;         // 6 per node
+  private int[] first, count;     // leaves: their items in order[]; inner nodes: count 0, first is the right child
+  private int[] parents;
+  private int nodeCount;
+  private boolean[] changed;
+  private int[] stack = new int[64];
+
+  BoxTree(float[] itemBounds, int itemCount, int leafSize) {
+    this.itemBounds = itemBounds;
+    this.leafSize = leafSize;
+    order = new int[itemCount];
+    for (int i=0; i<itemCount; i++) {
+      order[i] = i;
+    }
+    leafOf = new int[itemCount];
+    int maxNodes = Math.max(1, 2*itemCount);
+    bounds = new float[maxNodes*6];
+    first = new int[maxNodes];
+    count = new int[maxNodes];
+    parents = new int[maxNodes];
+    changed = new boolean[maxNodes];
+    if (itemCount > 0) {
+      build(0, itemCount, -1);
+    }
+  }
+
+  private int build(int start, int end, int parent) {
+    int node = nodeCount++;
+    parents[node] = parent;
+    if (end-start <= leafSize) {
+      first[node] = start;
+      count[node] = end-start;
+      for (int i=start; i<end; i++) {
+        leafOf[order[i]] = node;
+      }
+      computeLeaf(node);
+      return node;
+    }
+    // split at the median centre along the axis the centres are most spread out on
+    float[] lo = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY};
+    float[] hi = {Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+    for (int i=start; i<end; i++) {
+      for (int a=0; a<3; a++) {
+        float c = centre(order[i], a);
+        lo[a] = Math.min(lo[a], c);
+        hi[a] = Math.max(hi[a], c);
+      }
+    }
+    int axis = 0;
+    for (int a=1; a<3; a++) {
+      if (hi[a]-lo[a] > hi[axis]-lo[axis]) {
+        axis = a;
+      }
+    }
+    sortByCentre(start, end, axis);
+    int mid = (start+end) >>> 1;
+    build(start, mid, node);
+    first[node] = build(mid, end, node);
+    count[node] = 0;
+    computeInner(node);
+    return node;
+  }
+
+  private float centre(int item, int axis) {
+    return itemBounds[item*6+axis] + itemBounds[item*6+3+axis];
+  }
+
+  private void sortByCentre(int start, int end, final int axis) {
+    long[] keys = new long[end-start];
+    for (int i=start; i<end; i++) {
+      // a sortable int from the float, then the item
+      int bits = Float.floatToIntBits(centre(order[i], axis));
+      bits ^= (bits >> 31) & 0x7FFFFFFF;
+      keys[i-start] = (long)bits << 32 | order[i];
+    }
+    Arrays.sort(keys);
+    for (int i=start; i<end; i++) {
+      order[i] = (int)keys[i-start];
+    }
+  }
+
+  private void computeLeaf(int node) {
+    int b = node*6;
+    for (int a=0; a<3; a++) {
+      bounds[b+a] = Float.POSITIVE_INFINITY;
+      bounds[b+3+a] = Float.NEGATIVE_INFINITY;
+    }
+    for (int i=first[node]; i<first[node]+count[node]; i++) {
+      int item = order[i]*6;
+      for (int a=0; a<3; a++) {
+        bounds[b+a] = Math.min(bounds[b+a], itemBounds[item+a]);
+        bounds[b+3+a] = Math.max(bounds[b+3+a], itemBounds[item+3+a]);
+      }
+    }
+  }
+
+  private void computeInner(int node) {
+    int b = node*6, l = (node+1)*6, r = first[node]*6;
+    for (int a=0; a<3; a++) {
+      bounds[b+a] = Math.min(bounds[l+a], bounds[r+a]);
+      bounds[b+3+a] = Math.max(bounds[l+3+a], bounds[r+3+a]);
+    }
+  }
+
+  /**
+   * Marks an item whose box has changed, for the next refit().
+   */
+  void itemChanged(int item) {
+    for (int node = leafOf[item]; node >= 0 && !changed[node]; node = parents[node]) {
+      changed[node] = true;
+    }
+  }
+
+  /**
+   * Recomputes the boxes of the nodes above the items marked by itemChanged.
+   */
+  void refit() {
+    // children come after their parents, so going backwards does them first
+    for (int node=nodeCount-1; node>=0; node--) {
+      if (changed[node]) {
+        changed[node] = false;
+        if (count[node] > 0) {
+          computeLeaf(node);
+        }
+        else {
+          computeInner(node);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return The item hit nearest the origin, or -1 for none. hitT[0] gets its distance.
+   */
+  int raycast(float ox, float oy, float oz, float dx, float dy, float dz, float maxT, ItemTest test, float[] hitT) {
+    if (nodeCount == 0) {
+      return -1;
+    }
+    float ix = 1/nonZero(dx), iy = 1/nonZero(dy), iz = 1/nonZero(dz);
+    int hit = -1;
+    float best = maxT;
+    int top = 0;
+    stack[top++] = 0;
+    while (top > 0) {
+      int node = stack[--top];
+      if (slab(bounds, node*6, ox, oy, oz, ix, iy, iz, best) < 0) {
+        continue;
+      }
+      if (count[node] > 0) {
+        for (int i=first[node]; i<first[node]+count[node]; i++) {
+          int item = order[i];
+          if (slab(itemBounds, item*6, ox, oy, oz, ix, iy, iz, best) >= 0) {
+            float t = test.intersect(item, best);
+            if (t >= 0 && t < best) {
+              best = t;
+              hit = item;
+            }
+          }
+        }
+      }
+      else {
+        if (top+2 > stack.length) {
+          stack = Arrays.copyOf(stack, stack.length*2);
+        }
+        // the nearer child goes on top, so it is searched first and can shorten best for the other
+        int left = node+1, right = first[node];
+        float tl = slab(bounds, left*6, ox, oy, oz, ix, iy, iz, best);
+        float tr = slab(bounds, right*6, ox, oy, oz, ix, iy, iz, best);
+        if (tl >= 0 && tr >= 0) {
+          stack[top++] = tl < tr ? right : left;
+          stack[top++] = tl < tr ? left : right;
+        }
+        else if (tl >= 0) {
+          stack[top++] = left;
+        }
+        else if (tr >= 0) {
+          stack[top++] = right;
+        }
+      }
+    }
+    hitT[0] = best;
+    return hit;
+  }
+
+  // so 1/f is finite and the slab test needs no special case for rays along an axis
+  static float nonZero(float f) {
+    return f == 0 ? 1e-30f : f;
+  }
+
+  // the distance to where the ray enters a box, or -1 if it misses it before maxT
+  static float slab(float[] b, int o, float ox, float oy, float oz, float ix, float iy, float iz, float maxT) {
+    float t0 = (b[o]-ox)*ix, t1 = (b[o+3]-ox)*ix;
+    float near = Math.min(t0, t1), far = Math.max(t0, t1);
+    t0 = (b[o+1]-oy)*iy;
+    t1 = (b[o+4]-oy)*iy;
+    near = Math.max(near, Math.min(t0, t1));
+    far = Math.min(far, Math.max(t0, t1));
+    t0 = (b[o+2]-oz)*iz;
+    t1 = (b[o+5]-oz)*iz;
+    near = Math.max(near, Math.min(t0, t1));
+    far = Math.min(far, Math.max(t0, t1));
+    if (near > far || far < 0 || near > maxT) {
+      return -1;
+    }
+    return Math.max(near, 0);
+  }
+
+  int getNodeCount() {
+    return nodeCount;
+  }
+
+}
@@ -29,6 +29,9 @@ public class Camera {
   private float pitch;
   
   private Mat4 perspective;
+  private Mat4 view = new Mat4(1);
+  private int version;          // bumped whenever the position, orientation or projection changes
+  private CameraSnapshot snapshot = new CameraSnapshot();
 
   public Camera(Vec3 position, Vec3 target, Vec3 up) {
     setupCamera(position, target, up);
@@ -44,6 +47,27 @@ public class Camera {
     calculateYawPitch(front);
     worldUp = new Vec3(up);
     updateCameraVectors();
+    version++;
+  }
+
+  /**
+   * @return A number that changes whenever the camera moves, turns or gets a new projection
+   */
+  public int getVersion() {
+    return version;
+  }
+
+  /**
+   * Brings the snapshot up to date if the camera has changed since it was last taken.
+   * Take it once at the start of a frame and pass it on, so the whole frame sees one camera.
+   *
+   * @return The snapshot, which belongs to the camera and is refreshed in place
+   */
+  public CameraSnapshot getSnapshot() {
+    if (snapshot.getVersion() != version) {
+      snapshot.set(version, position, getViewMatrix(), perspective);
+    }
+    return snapshot;
   }
   
   public Vec3 getPosition() {
@@ -70,13 +94,15 @@ public class Camera {
     pitch = (float)Math.asin(v.y);
   }
 
+  // The returned matrix is rewritten by the next call, so copy it if it needs to be kept
   public Mat4 getViewMatrix() {
-    target = Vec3.add(position, front);
-    return Mat4Transform.lookAt(position, target, up);
+    Vec3.add(position, front, target);
+    return Mat4Transform.lookAt(position, target, up, view);
   }
   
   public void setPerspectiveMatrix(Mat4 m) {
     perspective = m;
+    version++;
   }
   
   public Mat4 getPerspectiveMatrix() {
@@ -93,6 +119,9 @@ public class Camera {
       case FORWARD: position.add(Vec3.multiply(front, KEYBOARD_SPEED)); break;
       case BACK: position.add(Vec3.multiply(front, -KEYBOARD_SPEED)); break;
     }
+    if (movement != Movement.NO_MOVEMENT) {
+      version++;
+    }
   }
   
   public void updateYawPitch(float y, float p) {
@@ -102,6 +131,7 @@ public class Camera {
     else if (pitch < -89) pitch = -89;
     updateFront();
     updateCameraVectors();
+    version++;
   }
   
   private void updateFront() {
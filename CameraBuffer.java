@@ -0,0 +1,67 @@
+import gmaths.*;
+import java.nio.*;
+import com.jogamp.common.nio.*;
+import com.jogamp.opengl.*;
+
+/**
+ * A CameraSnapshot in a uniform buffer, shared by every program that declares the Camera
+ * block. Shader binds the block to BINDING when it links. The block, in std140 layout:
+ * <pre>
+ *   layout(std140) uniform Camera {
+ *     mat4 view;             // offset 0
+ *     mat4 projection;       // 64
+ *     mat4 viewProjection;   // 128
+ *     vec3 viewPos;          // 192
+ *   };
+ * </pre>
+ * Models then only upload their model matrix per draw.
+ */
+public class CameraBuffer {
+
+  public static final String BLOCK_NAME = "Camera";
+  public static final int BINDING = 1;
+
+  private static final int SIZE_FLOATS = 3*16 + 4;
+
+  private int[] bufferId = new int[1];
+  private float[] data = new float[SIZE_FLOATS];
+  private FloatBuffer buffer = Buffers.newDirectFloatBuffer(SIZE_FLOATS);
+  private int version = -1;
+
+  public CameraBuffer(GL3 gl) {
+    gl.glGenBuffers(1, bufferId, 0);
+    gl.glBindBuffer(GL2ES3.GL_UNIFORM_BUFFER, bufferId[0]);
+    gl.glBufferData(GL2ES3.GL_UNIFORM_BUFFER, Float.BYTES * SIZE_FLOATS, null, GL.GL_DYNAMIC_DRAW);
+    gl.glBindBufferBase(GL2ES3.GL_UNIFORM_BUFFER, BINDING, bufferId[0]);
+  }
+
+  /**
+   * Uploads the snapshot, unless it is the one already uploaded.
+   *
+   * @return true if it was uploaded
+   */
+  public boolean update(GL3 gl, CameraSnapshot snapshot) {
+    if (snapshot.getVersion() == version) {
+      return false;
+    }
+    version = snapshot.getVersion();
+    snapshot.getView().toFloatArrayForGLSL(data, 0);
+    snapshot.getProjection().toFloatArrayForGLSL(data, 16);
+    snapshot.getViewProjection().toFloatArrayForGLSL(data, 32);
+    Vec3 position = snapshot.getPosition();
+    data[48] = position.x;
+    data[49] = position.y;
+    data[50] = position.z;
+    buffer.clear();
+    buffer.put(data);
+    buffer.flip();
+    gl.glBindBuffer(GL2ES3.GL_UNIFORM_BUFFER, bufferId[0]);
+    gl.glBufferSubData(GL2ES3.GL_UNIFORM_BUFFER, 0, Float.BYTES * SIZE_FLOATS, buffer);
+    return true;
+  }
+
+  public void dispose(GL3 gl) {
+    gl.glDeleteBuffers(1, bufferId, 0);
+  }
+
+}
@@ -0,0 +1,73 @@
+import gmaths.*;
+
+/**
+ * The matrices of a Camera as they were when it was last changed: view, projection, their
+ * product and the inverses of all three. Camera.getSnapshot() recomputes them only when the
+ * camera has moved, turned or been given a new projection since, so a frame that takes one
+ * snapshot does the lookAt, the multiply and the inversions at most once, and not at all
+ * while the camera is still. getVersion() tells consumers, e.g. a CameraBuffer, whether there
+ * is anything new to upload.
+ * <p>
+ * The matrices are owned by the snapshot and rewritten when it is refreshed, so copy them to keep them.
+ */
+public class CameraSnapshot {
+
+  private int version = -1;
+  private final Vec3 position = new Vec3();
+  private final Mat4 view = new Mat4(1);
+  private final Mat4 projection = new Mat4(1);
+  private final Mat4 viewProjection = new Mat4(1);
+  private final Mat4 inverseView = new Mat4(1);
+  private final Mat4 inverseProjection = new Mat4(1);
+  private final Mat4 inverseViewProjection = new Mat4(1);
+
+  void set(int version, Vec3 position, Mat4 view, Mat4 projection) {
+    this.version = version;
+    this.position.set(position);
+    this.view.set(view);
+    this.projection.set(projection);
+    Mat4.multiply(projection, view, viewProjection);
+    Mat4.inverse(view, inverseView);
+    Mat4.inverse(projection, inverseProjection);
+    Mat4.inverse(viewProjection, inverseViewProjection);
+  }
+
+  /**
+   * @return The Camera's version when this was taken; it changes whenever the camera does
+   */
+  public int getVersion() {
+    return version;
+  }
+
+  public Vec3 getPosition() {
+    return position;
+  }
+
+  public Mat4 getView() {
+    return view;
+  }
+
+  public Mat4 getProjection() {
+    return projection;
+  }
+
+  /**
+   * @return projection x view
+   */
+  public Mat4 getViewProjection() {
+    return viewProjection;
+  }
+
+  public Mat4 getInverseView() {
+    return inverseView;
+  }
+
+  public Mat4 getInverseProjection() {
+    return inverseProjection;
+  }
+
+  public Mat4 getInverseViewProjection() {
+    return inverseViewProjection;
+  }
+
+}
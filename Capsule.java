@@ -0,0 +1,45 @@
+/**
+ * A capsule of height 1 centred on the origin with its axis along y: a cylinder with a
+ * hemisphere on each end.
+ */
+public final class Capsule {
+
+  /**
+   * @param longitudes The number of points around, the last one repeating the first for the texture seam
+   * @param latitudes The number of rings of points from end to end, an even number so each
+   *                  hemisphere gets half of them
+   * @param radius The radius, up to 0.5 which gives a sphere
+   * @return The capsule, shared with every other caller asking for the same shape
+   */
+  public static MeshData generate(int longitudes, int latitudes, float radius) {
+    MeshData.checkAtLeast("longitudes", longitudes, 3);
+    MeshData.checkAtLeast("latitudes", latitudes, 4);
+    if (latitudes%2 != 0 || radius <= 0 || radius > 0.5f) {
+      throw new IllegalArgumentException("capsule needs an even number of latitudes and a radius in (0, 0.5]");
+    }
+    return MeshData.cached("capsule "+longitudes+" "+latitudes+" "+radius,
+        key -> new MeshData(key, createVertices(longitudes, latitudes, radius), MeshData.gridIndices(longitudes, latitudes)));
+  }
+
+  // A sphere split at the equator, with the halves moved apart. The band between the two
+  // equator rows is the cylinder.
+  private static float[] createVertices(int longitudes, int latitudes, float radius) {
+    float[] vertices = new float[longitudes*latitudes*8];
+    int half = latitudes/2;
+    float offset = 0.5f-radius;
+    MeshData.forEachRow(latitudes, longitudes, j -> {
+      boolean upper = j >= half;
+      double b = Math.toRadians(upper ? 90*(double)(j-half)/(half-1) : -90+90*(double)(j)/(half-1));
+      float y = (float)Math.sin(b);
+      for (int i = 0; i<longitudes; ++i) {
+        double a = Math.toRadians(360*(double)(i)/(longitudes-1));
+        float x = (float)(Math.cos(b)*Math.sin(a));
+        float z = (float)(Math.cos(b)*Math.cos(a));
+        float py = radius*y + (upper ? offset : -offset);
+        MeshData.put(vertices, j*longitudes+i, radius*x, py, radius*z, x, y, z, (float)(i)/(longitudes-1), py+0.5f);
+      }
+    });
+    return vertices;
+  }
+
+}
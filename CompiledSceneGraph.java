@@ -0,0 +1,217 @@
+import gmaths.*;
+import java.util.ArrayList;
+
+/**
+ * A flattened copy of a scene graph's transform hierarchy, for scenes with many nodes.
+ * Nodes are stored in pre-order, so every parent comes before its children and every
+ * subtree is a contiguous range. Local transforms and world transforms live in two
+ * packed float arrays (16 floats per node, the layout used by Mat4Batch), so the world
+ * pass is a loop over those arrays rather than a walk over the nodes. It goes one depth
+ * at a time: the nodes of a level only need the level above, so each level is one
+ * Mat4Batch.multiplyAll call. The Mat4 kind of each matrix is kept in parallel byte
+ * arrays and combined as Mat4.multiply would, so the worldTransforms written back keep
+ * their tags and their fast paths.
+ * <p>
+ * Compiling binds the TransformNodes to this graph: setTransform writes the new local
+ * transform straight into it, and update() recomputes only the range covering the
+ * subtrees that changed, then copies the results back into the nodes' worldTransforms
+ * and refreshes their bounds, so draw() works as before. A TransformNode belongs to the
+ * graph it was last compiled into, so compile only the root that is updated each frame.
+ * The structure is fixed when compiled; compile again after adding nodes.
+ */
+public class CompiledSceneGraph {
+
+  private SGNode[] nodes;
+  private int[] parents;     // index of each node's parent, -1 for the root
+  private int[] ends;        // one past the last node in each node's subtree
+  private int[] levels;      // the node indices sorted by depth, and by index within a depth
+  private int[] levelStarts; // where each depth starts in levels, plus one past the end
+  private float[] locals;    // each node's transform, identity for nodes without one
+  private float[] worlds;    // world x local, the transform each node's children see
+  private byte[] localKinds, worldKinds;   // the Mat4 kinds of the matrices above
+  private float[] rootWorld = new float[16];
+  private int rootKind;
+  private float[] batchParents, batchLocals;   // one level's operands, gathered for multiplyAll
+  private int dirtyFrom, dirtyTo;
+
+  public CompiledSceneGraph(SGNode root) {
+    ArrayList<SGNode> order = new ArrayList<SGNode>();
+    ArrayList<Integer> parentList = new ArrayList<Integer>();
+    flatten(root, -1, order, parentList);
+    int n = order.size();
+    nodes = order.toArray(new SGNode[n]);
+    parents = new int[n];
+    ends = new int[n];
+    locals = new float[n*16];
+    worlds = new float[n*16];
+    localKinds = new byte[n];
+    worldKinds = new byte[n];
+    Mat4 identity = new Mat4(1);
+    for (int i=0; i<n; ++i) {
+      parents[i] = parentList.get(i);
+      ends[i] = i+1;
+      if (nodes[i] instanceof TransformNode) {
+        TransformNode node = (TransformNode)nodes[i];
+        node.getTransform().toFloatArrayForGLSL(locals, i*16);
+        localKinds[i] = (byte)node.getTransform().getKind();
+        node.bind(this, i);
+      }
+      else {
+        identity.toFloatArrayForGLSL(locals, i*16);
+        localKinds[i] = (byte)Mat4.IDENTITY;
+      }
+    }
+    // children come after their parents, so walking backwards finishes each subtree before its parent
+    for (int i=n-1; i>0; --i) {
+      ends[parents[i]] = Math.max(ends[parents[i]], ends[i]);
+    }
+    sortByDepth();
+    root.worldTransform.toFloatArrayForGLSL(rootWorld);
+    rootKind = root.worldTransform.getKind();
+    dirtyFrom = 0;
+    dirtyTo = n;
+  }
+
+  private static void flatten(SGNode node, int parent, ArrayList<SGNode> order, ArrayList<Integer> parents) {
+    int index = order.size();
+    order.add(node);
+    parents.add(parent);
+    if (node instanceof StaticNode && ((StaticNode)node).isBaked()) {
+      return;   // nothing below moves, and the baked meshes draw in place of the originals
+    }
+    for (int i=0; i<node.children.size(); i++) {
+      flatten(node.children.get(i), index, order, parents);
+    }
+  }
+
+  // A counting sort on depth, which keeps the nodes of each depth in index order
+  private void sortByDepth() {
+    int n = nodes.length;
+    int[] depths = new int[n];
+    int maxDepth = 0;
+    for (int i=1; i<n; ++i) {
+      depths[i] = depths[parents[i]]+1;
+      maxDepth = Math.max(maxDepth, depths[i]);
+    }
+    levelStarts = new int[maxDepth+2];
+    for (int i=0; i<n; ++i) {
+      levelStarts[depths[i]+1]++;
+    }
+    int widest = 0;
+    for (int d=0; d<=maxDepth; ++d) {
+      widest = Math.max(widest, levelStarts[d+1]);
+      levelStarts[d+1] += levelStarts[d];
+    }
+    levels = new int[n];
+    int[] next = levelStarts.clone();
+    for (int i=0; i<n; ++i) {
+      levels[next[depths[i]]++] = i;
+    }
+    batchParents = new float[widest*16];
+    batchLocals = new float[widest*16];
+  }
+
+  // The first position in levels[from..to) holding a node index >= index
+  private int lowerBound(int from, int to, int index) {
+    while (from < to) {
+      int mid = (from+to) >>> 1;
+      if (levels[mid] < index) {
+        from = mid+1;
+      }
+      else {
+        to = mid;
+      }
+    }
+    return from;
+  }
+
+  public int size() {
+    return nodes.length;
+  }
+
+  /**
+   * Called by a bound TransformNode when its transform changes.
+   */
+  void setLocal(int index, Mat4 m) {
+    m.toFloatArrayForGLSL(locals, index*16);
+    localKinds[index] = (byte)m.getKind();
+    if (dirtyFrom >= dirtyTo) {
+      dirtyFrom = index;
+      dirtyTo = ends[index];
+    }
+    else {
+      dirtyFrom = Math.min(dirtyFrom, index);
+      dirtyTo = Math.max(dirtyTo, ends[index]);
+    }
+  }
+
+  /**
+   * Recomputes the world transforms of everything that changed since the last update
+   * and writes them back into the nodes.
+   */
+  public void update() {
+    if (dirtyFrom >= dirtyTo) {
+      return;
+    }
+    int from = dirtyFrom;
+    if (from == 0) {
+      Mat4Batch.multiply(rootWorld, 0, locals, 0, worlds, 0);
+      worldKinds[0] = (byte)Mat4.multiplyKind(rootKind, localKinds[0]);
+      writeBack(0, rootWorld, 0, rootKind);
+      from = 1;
+    }
+    // the dirty nodes of one depth are a run of levels, and their parents are all done
+    for (int d=1; d<levelStarts.length-1; ++d) {
+      int first = lowerBound(levelStarts[d], levelStarts[d+1], from);
+      int count = lowerBound(first, levelStarts[d+1], dirtyTo)-first;
+      if (count == 0) {
+        continue;
+      }
+      for (int k=0; k<count; ++k) {
+        int i = levels[first+k];
+        System.arraycopy(worlds, parents[i]*16, batchParents, k*16, 16);
+        System.arraycopy(locals, i*16, batchLocals, k*16, 16);
+      }
+      Mat4Batch.multiplyAll(batchParents, batchLocals, batchLocals, count);
+      for (int k=0; k<count; ++k) {
+        int i = levels[first+k];
+        int p = parents[i];
+        System.arraycopy(batchLocals, k*16, worlds, i*16, 16);
+        worldKinds[i] = (byte)Mat4.multiplyKind(worldKinds[p], localKinds[i]);
+        writeBack(i, worlds, p*16, worldKinds[p]);
+      }
+    }
+    // bounds go bottom-up: the range backwards, then the ancestors above it
+    for (int i=dirtyTo-1; i>=dirtyFrom; --i) {
+      nodes[i].updateBounds();
+    }
+    for (int i=parents[dirtyFrom]; i>=0; i=parents[i]) {
+      nodes[i].updateBounds();
+    }
+    dirtyFrom = dirtyTo = 0;
+  }
+
+  private void writeBack(int i, float[] world, int offset, int kind) {
+    SGNode node = nodes[i];
+    node.worldTransform.set(world, offset, kind);
+    node.worldTransformChanged();
+    node.dirty = false;
+    node.childDirty = false;
+  }
+
+  /**
+   * @return The packed child-space transforms, world x local for node i at index i*16
+   */
+  public float[] getWorldTransforms() {
+    return worlds;
+  }
+
+  public SGNode getNode(int i) {
+    return nodes[i];
+  }
+
+  public int getParent(int i) {
+    return parents[i];
+  }
+
+}
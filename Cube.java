@@ -49,4 +49,11 @@ public final class Cube {
       18,19,23  // y +ve
   };
 
+  /**
+   * @return The cube's data, shared with every other caller
+   */
+  public static MeshData generate() {
+    return MeshData.cached("cube", key -> new MeshData(key, vertices, indices));
+  }
+
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+/**
+ * A capped cylinder of diameter 1 and height 1, centred on the origin with its axis along y.
+ */
+public final class Cylinder {
+
+  /**
+   * @param longitudes The number of points around, the last one repeating the first for the texture seam
+   * @return The cylinder, shared with every other caller asking for the same tessellation
+   */
+  public static MeshData generate(int longitudes) {
+    MeshData.checkAtLeast("longitudes", longitudes, 3);
+    return MeshData.cached("cylinder "+longitudes, key -> new MeshData(key, createVertices(longitudes), createIndices(longitudes)));
+  }
+
+  // the side as a grid of two rows, then each cap as a centre and a ring
+  private static float[] createVertices(int longitudes) {
+    float[] vertices = new float[(longitudes*4+2)*8];
+    for (int i = 0; i<longitudes; ++i) {
+      double a = Math.toRadians(360*(double)(i)/(longitudes-1));
+      float x = (float)Math.sin(a), z = (float)Math.cos(a);
+      float s = (float)(i)/(longitudes-1);
+      MeshData.put(vertices, i, x*0.5f, -0.5f, z*0.5f, x, 0, z, s, 0);
+      MeshData.put(vertices, longitudes+i, x*0.5f, 0.5f, z*0.5f, x, 0, z, s, 1);
+      MeshData.put(vertices, longitudes*2+1+i, x*0.5f, -0.5f, z*0.5f, 0, -1, 0, 0.5f+x*0.5f, 0.5f-z*0.5f);
+      MeshData.put(vertices, longitudes*3+2+i, x*0.5f, 0.5f, z*0.5f, 0, 1, 0, 0.5f+x*0.5f, 0.5f+z*0.5f);
+    }
+    MeshData.put(vertices, longitudes*2, 0, -0.5f, 0, 0, -1, 0, 0.5f, 0.5f);
+    MeshData.put(vertices, longitudes*3+1, 0, 0.5f, 0, 0, 1, 0, 0.5f, 0.5f);
+    return vertices;
+  }
+
+  private static int[] createIndices(int longitudes) {
+    int[] side = MeshData.gridIndices(longitudes, 2);
+    int[] indices = new int[side.length+(longitudes-1)*6];
+    System.arraycopy(side, 0, indices, 0, side.length);
+    int n = side.length;
+    int bottom = longitudes*2, top = longitudes*3+1;
+    for (int i = 0; i<longitudes-1; ++i) {
+      indices[n++] = bottom;
+      indices[n++] = bottom+2+i;
+      indices[n++] = bottom+1+i;
+      indices[n++] = top;
+      indices[n++] = top+1+i;
+      indices[n++] = top+2+i;
+    }
+    return indices;
+  }
+
+}
@@ -0,0 +1,236 @@
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+import com.jogamp.opengl.*;
+import com.jogamp.opengl.util.texture.*;
+
+/**
+ * A shadow of the GL state that Shader, Mesh, Light, Model and TextureLibrary change: the
+ * program in use, the bound vertex array, the active texture unit, the texture bound to each
+ * unit and which capabilities are enabled. Calls that would set what is already set are
+ * dropped. There is one per GL context, from get(gl).
+ * <p>
+ * Everything that changes this state has to go through here, or call invalidate() after, or
+ * the shadow goes stale and a needed call gets dropped.
+ * <p>
+ * Each call type counts the calls asked for and the calls made, per frame; beginFrame() moves
+ * the counts to the last frame's, for getRequested and getIssued.
+ */
+public class GLState {
+
+  public enum Call {USE_PROGRAM, BIND_VERTEX_ARRAY, ACTIVE_TEXTURE, BIND_TEXTURE, ENABLE, DISABLE}
+
+  private static final int UNKNOWN = -1;
+  private static final int MAX_TEXTURE_UNITS = 16;
+
+  private static final Map<Object, GLState> states = new WeakHashMap<Object, GLState>();
+  private static volatile GLState last;   // the last one looked up, the only one in a single-context program
+
+  private final WeakReference<Object> context;   // weak, or the map's entry would keep its own key alive
+  private int program;
+  private int vertexArray;
+  private int activeUnit;
+  private int[] textures = new int[MAX_TEXTURE_UNITS];
+  private int[] capabilities = new int[8];   // the capabilities seen so far, and whether each is on
+  private boolean[] enabled = new boolean[8];
+  private int capabilityCount;
+
+  private int[] requested = new int[Call.values().length];
+  private int[] issued = new int[Call.values().length];
+  private int[] lastRequested = new int[Call.values().length];
+  private int[] lastIssued = new int[Call.values().length];
+
+  private GLState(Object context) {
+    this.context = new WeakReference<Object>(context);
+    invalidate();
+  }
+
+  /**
+   * @return The state of gl's context, created the first time it is asked for
+   */
+  public static GLState get(GL gl) {
+    Object context = gl.getContext();
+    if (context == null) {
+      context = gl;
+    }
+    GLState state = last;
+    if (state != null && state.context.get() == context) {
+      return state;
+    }
+    synchronized (states) {
+      state = states.get(context);
+      if (state == null) {
+        state = new GLState(context);
+        states.put(context, state);
+      }
+    }
+    last = state;
+    return state;
+  }
+
+  /**
+   * Forgets everything, so the next call of each kind is made. Call after changing
+   * any of the state behind this class's back.
+   */
+  public void invalidate() {
+    program = UNKNOWN;
+    vertexArray = UNKNOWN;
+    activeUnit = UNKNOWN;
+    for (int i=0; i<textures.length; i++) {
+      textures[i] = UNKNOWN;
+    }
+    capabilityCount = 0;
+  }
+
+  public void useProgram(GL3 gl, int id) {
+    requested[Call.USE_PROGRAM.ordinal()]++;
+    if (program != id) {
+      program = id;
+      issued[Call.USE_PROGRAM.ordinal()]++;
+      gl.glUseProgram(id);
+    }
+  }
+
+  public void bindVertexArray(GL3 gl, int id) {
+    requested[Call.BIND_VERTEX_ARRAY.ordinal()]++;
+    if (vertexArray != id) {
+      vertexArray = id;
+      issued[Call.BIND_VERTEX_ARRAY.ordinal()]++;
+      gl.glBindVertexArray(id);
+    }
+  }
+
+  /**
+   * Deleting the bound vertex array unbinds it.
+   */
+  public void vertexArrayDeleted(int id) {
+    if (vertexArray == id) {
+      vertexArray = 0;
+    }
+  }
+
+  /**
+   * @param unit The texture unit, from 0, not GL_TEXTURE0
+   */
+  public void activeTexture(GL3 gl, int unit) {
+    requested[Call.ACTIVE_TEXTURE.ordinal()]++;
+    if (activeUnit != unit) {
+      activeUnit = unit;
+      issued[Call.ACTIVE_TEXTURE.ordinal()]++;
+      gl.glActiveTexture(GL.GL_TEXTURE0+unit);
+    }
+  }
+
+  /**
+   * Binds a texture to a unit, making the unit active only if the texture is not already bound there.
+   *
+   * @param unit The texture unit, from 0, not GL_TEXTURE0
+   */
+  public void bindTexture(GL3 gl, int unit, Texture texture) {
+    requested[Call.BIND_TEXTURE.ordinal()]++;
+    int id = texture.getTextureObject();
+    if (textures[unit] != id) {
+      activeTexture(gl, unit);
+      textures[unit] = id;
+      issued[Call.BIND_TEXTURE.ordinal()]++;
+      texture.bind(gl);
+    }
+  }
+
+  /**
+   * Binds a texture to the active unit, e.g. to set its parameters.
+   */
+  public void bindTexture(GL3 gl, Texture texture) {
+    if (activeUnit == UNKNOWN) {
+      activeTexture(gl, 0);
+    }
+    bindTexture(gl, activeUnit, texture);
+  }
+
+  /**
+   * Deleting a texture unbinds it from every unit.
+   */
+  public void textureDeleted(int id) {
+    for (int i=0; i<textures.length; i++) {
+      if (textures[i] == id) {
+        textures[i] = 0;
+      }
+    }
+  }
+
+  public void enable(GL3 gl, int capability) {
+    requested[Call.ENABLE.ordinal()]++;
+    if (setCapability(capability, true)) {
+      issued[Call.ENABLE.ordinal()]++;
+      gl.glEnable(capability);
+    }
+  }
+
+  public void disable(GL3 gl, int capability) {
+    requested[Call.DISABLE.ordinal()]++;
+    if (setCapability(capability, false)) {
+      issued[Call.DISABLE.ordinal()]++;
+      gl.glDisable(capability);
+    }
+  }
+
+  // true if the capability was not known to be in that state already
+  private boolean setCapability(int capability, boolean on) {
+    for (int i=0; i<capabilityCount; i++) {
+      if (capabilities[i] == capability) {
+        boolean changed = enabled[i] != on;
+        enabled[i] = on;
+        return changed;
+      }
+    }
+    if (capabilityCount == capabilities.length) {
+      capabilities = Arrays.copyOf(capabilities, capabilityCount*2);
+      enabled = Arrays.copyOf(enabled, capabilityCount*2);
+    }
+    capabilities[capabilityCount] = capability;
+    enabled[capabilityCount] = on;
+    capabilityCount++;
+    return true;
+  }
+
+  /**
+   * Starts counting a new frame, keeping the counts of the one before.
+   */
+  public void beginFrame() {
+    int[] t = lastRequested;
+    lastRequested = requested;
+    requested = t;
+    t = lastIssued;
+    lastIssued = issued;
+    issued = t;
+    Arrays.fill(requested, 0);
+    Arrays.fill(issued, 0);
+  }
+
+  /**
+   * @return The number of calls of a type asked for in the last frame
+   */
+  public int getRequested(Call call) {
+    return lastRequested[call.ordinal()];
+  }
+
+  /**
+   * @return The number of calls of a type that reached the driver in the last frame
+   */
+  public int getIssued(Call call) {
+    return lastIssued[call.ordinal()];
+  }
+
+  public String toString() {
+    StringBuilder s = new StringBuilder();
+    for (Call call : Call.values()) {
+      if (s.length() > 0) {
+        s.append(", ");
+      }
+      s.append(call.name().toLowerCase()).append(' ').append(getRequested(call)).append(" -> ").append(getIssued(call));
+    }
+    return s.toString();
+  }
+
+}
@@ -11,6 +11,8 @@ import com.jogamp.opengl.util.texture.*;
 public class Hatch_GLEventListener implements GLEventListener {
   
   private static final boolean DISPLAY_SHADERS = false;
+  // -Dhatch.firstFrameTime=true prints the time to the first frame, for comparing cold and warm ProgramCache runs
+  private static final boolean FIRST_FRAME_TIME = Boolean.getBoolean("hatch.firstFrameTime");
     
   public Hatch_GLEventListener(Camera camera) {
     this.camera = camera;
@@ -24,14 +26,15 @@ public class Hatch_GLEventListener implements GLEventListener {
 
   /* Initialisation */
   public void init(GLAutoDrawable drawable) {   
+    initStart = System.nanoTime();
     GL3 gl = drawable.getGL().getGL3();
     System.err.println("Chosen GLCapabilities: " + drawable.getChosenGLCapabilities());
     gl.glClearColor(0.0f, 0.0f, 0.0f, 1.0f); 
     gl.glClearDepth(1.0f);
-    gl.glEnable(GL.GL_DEPTH_TEST);
+    GLState.get(gl).enable(gl, GL.GL_DEPTH_TEST);
     gl.glDepthFunc(GL.GL_LESS);
     gl.glFrontFace(GL.GL_CCW);    // default is 'CCW'
-    gl.glEnable(GL.GL_CULL_FACE); // default is 'not enabled'
+    GLState.get(gl).enable(gl, GL.GL_CULL_FACE); // default is 'not enabled'
     gl.glCullFace(GL.GL_BACK);   // default is 'back', assuming CCW
     initialise(gl);
   }
@@ -40,6 +43,7 @@ public class Hatch_GLEventListener implements GLEventListener {
   public void reshape(GLAutoDrawable drawable, int x, int y, int width, int height) {
     GL3 gl = drawable.getGL().getGL3();
     gl.glViewport(x, y, width, height);
+    scene.setViewport(x, y, width, height);
     float aspect = (float)width/(float)height;
     camera.setPerspectiveMatrix(Mat4Transform.perspective(45, aspect));
   }
@@ -48,6 +52,13 @@ public class Hatch_GLEventListener implements GLEventListener {
   public void display(GLAutoDrawable drawable) {
     GL3 gl = drawable.getGL().getGL3();
     render(gl);
+    if (FIRST_FRAME_TIME && initStart != 0) {
+      // time to first frame, which is mostly compiling shaders unless the ProgramCache has them.
+      // glFinish waits for the GPU, so the time includes the draws, not just their submission
+      gl.glFinish();
+      System.out.println("first frame "+(System.nanoTime()-initStart)/1000000+" ms after init, "+ProgramCache.get(gl));
+      initStart = 0;
+    }
   }
 
   /* Clean up memory, if necessary */
@@ -65,6 +76,7 @@ public class Hatch_GLEventListener implements GLEventListener {
 
   private Camera camera;
   private Scene scene;
+  private long initStart;   // 0 once the first frame is drawn
 
   private void initialise(GL3 gl) {
     scene = new Scene(gl, camera);
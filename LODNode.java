@@ -0,0 +1,71 @@
+import gmaths.*;
+import com.jogamp.opengl.*;
+
+/**
+ * A ModelNode with several versions of its model, from the full mesh down to coarser
+ * ones. Each frame collect() picks one from how much of the screen the model covers.
+ * A level is only left once the size is HYSTERESIS past its threshold, so a model
+ * sitting near a threshold does not flicker between two meshes.
+ */
+public class LODNode extends ModelNode {
+
+  // The minimum screen sizes (see RenderQueue.getScreenSize) for a full mesh and one coarser mesh,
+  // below which the coarsest mesh is used
+  public static final float[] DEFAULT_MIN_SIZES = {0.25f, 0.08f};
+  public static final float HYSTERESIS = 0.15f;
+
+  private Model[] levels;
+  private float[] minSizes;
+  private int level;
+
+  /**
+   * @param levels The models to choose from, finest first
+   * @param minSizes The smallest screen size each level but the last is used at, decreasing
+   */
+  public LODNode(String name, Model[] levels, float[] minSizes) {
+    super(name, levels[0]);
+    if (minSizes.length != levels.length-1) {
+      throw new IllegalArgumentException("need a minimum size for each level but the last");
+    }
+    this.levels = levels;
+    this.minSizes = minSizes;
+  }
+
+  /**
+   * @return The model followed by a copy of it using each of the coarser meshes
+   */
+  public static Model[] levels(GL3 gl, Model model, Mesh... coarser) {
+    Model[] levels = new Model[coarser.length+1];
+    levels[0] = model;
+    for (int i=0; i<coarser.length; i++) {
+      levels[i+1] = model.withMesh(gl, coarser[i]);
+    }
+    return levels;
+  }
+
+  /**
+   * @return The index of the level drawn last
+   */
+  public int getLevel() {
+    return level;
+  }
+
+  /**
+   * Moves to a finer or coarser level if the screen size has gone far enough past a threshold.
+   */
+  void selectLevel(float screenSize) {
+    while (level > 0 && screenSize > minSizes[level-1]*(1+HYSTERESIS)) {
+      level--;
+    }
+    while (level < minSizes.length && screenSize < minSizes[level]*(1-HYSTERESIS)) {
+      level++;
+    }
+    model = levels[level];
+  }
+
+  public int collect(RenderQueue queue, Frustum frustum) {
+    selectLevel(queue.getScreenSize(modelCentre, modelRadius));
+    return super.collect(queue, frustum);
+  }
+
+}
@@ -6,6 +6,7 @@ import com.jogamp.opengl.util.glsl.*;
 import com.jogamp.opengl.util.texture.*;
 import gmaths.Mat4;
 import gmaths.Mat4Transform;
+import gmaths.Quat;
 import gmaths.Vec3;
 
 /**
@@ -49,6 +50,18 @@ public class Lamp {
 	private TransformNode jointRotate, headRotate, baseRotate;
 	private TransformNode[] eyeRotateNodes, positionEyeStems;
 	private Poses poses;
+	private Mat4 eyeTransform = new Mat4(1);
+
+	// Poses are blended over POSE_SECONDS, from the rotations
+	// the lamp had when asked, by move()
+	private static final double POSE_SECONDS = 1;
+	private static final Vec3 NO_TRANSLATION = new Vec3(0), UNIT_SCALE = new Vec3(1);
+	private volatile LampPose requestedPose;
+	private LampPose targetPose;
+	private double poseStartTime;
+	private Quat baseRotation = new Quat(), armRotation = new Quat(), headRotation = new Quat();
+	private Quat baseFrom = new Quat(), armFrom = new Quat(), headFrom = new Quat();
+	private Mat4 poseTransform = new Mat4(1);
 
 
 	/**
@@ -89,11 +102,11 @@ public class Lamp {
 		this.poses = poses;
 
 		// Define our base & head info
-		Mesh cubeMesh = new Mesh(gl, Cube.vertices.clone(), Cube.indices.clone());
+		Mesh cubeMesh = MeshLibrary.get(gl, Cube.generate());
 		Material baseMaterial = new Material();
 
 		// Define the arms & joints
-		Mesh sphereMesh = new Mesh(gl, Sphere.vertices.clone(), Sphere.indices.clone());
+		Mesh sphereMesh = MeshLibrary.get(gl, Sphere.generate(30, 30));
 		Material armMaterial = new Material();
 		Material eyeMaterial = new MagicMaterial(new Vec3(0.2f), new Vec3(1), new Vec3(1), 1);
 
@@ -107,6 +120,14 @@ public class Lamp {
 		eyeStemSphere = new Model(gl, camera, worldLights, multiShader, armMaterial, new Mat4(1), sphereMesh, textures[0]);
 		shellSphere = new Model(gl, camera, worldLights, multiShader, armMaterial, new Mat4(1), sphereMesh, textures[2]);
 
+		// Coarser spheres for when the parts are small on screen
+		Mesh[] coarseSpheres = new Mesh[] {MeshLibrary.get(gl, Sphere.generate(14, 14)), MeshLibrary.get(gl, Sphere.generate(8, 8))};
+		Model[] armSpheres = LODNode.levels(gl, armSphere, coarseSpheres);
+		Model[] jointSpheres = LODNode.levels(gl, jointSphere, coarseSpheres);
+		Model[] eyeSpheres = LODNode.levels(gl, eyeSphere, coarseSpheres);
+		Model[] eyeStemSpheres = LODNode.levels(gl, eyeStemSphere, coarseSpheres);
+		Model[] shellSpheres = LODNode.levels(gl, shellSphere, coarseSpheres);
+
 
 		// Create the light
 		headLight = new SpotLight(gl, 12.5f, 16f, beamEquation);
@@ -143,7 +164,7 @@ public class Lamp {
 		float shellRadius = 3*jointRadius;
 
 		// Create root
-		lampRoot = new NameNode("table");
+		lampRoot = new NameNode("lamp");
 
 		// Move the lamp into position
 		TransformNode lampMoveTransform = new TransformNode("Move the lamp", initialPosition);
@@ -155,7 +176,7 @@ public class Lamp {
 			baseRotate = new TransformNode("Rotate the arm at the base",Mat4Transform.rotateAroundY(0));
 
 
-			Mat4 m = Mat4.multiply(Mat4Transform.scale(baseWidth,baseHeight,baseDepth), Mat4Transform.translate(0,0.5f,0));
+			Mat4 m = scaleAboveOrigin(baseWidth,baseHeight,baseDepth);
 				TransformNode makeBase = new TransformNode("make the base for the lamp", m);
 					ModelNode baseShape = new ModelNode("Base of lamp", baseCube);
 
@@ -167,9 +188,9 @@ public class Lamp {
 			TransformNode positionArm1 = new TransformNode("Move arm 1 into position", m);
 
 			// Construct the arm
-			m = Mat4.multiply(Mat4Transform.scale(armWidth,armHeight,armDepth), Mat4Transform.translate(0,0.5f,0));
+			m = scaleAboveOrigin(armWidth,armHeight,armDepth);
 				TransformNode makeArm1 = new TransformNode("Make arm 1", m);
-					ModelNode arm1Shape = new ModelNode("Arm 1 of lamp", armSphere);
+					ModelNode arm1Shape = new LODNode("Arm 1 of lamp", armSpheres, LODNode.DEFAULT_MIN_SIZES);
 
 		// Create the joint of the lamp
 		NameNode joint1 = new NameNode("Joint 1");
@@ -182,9 +203,9 @@ public class Lamp {
 			jointRotate = new TransformNode("Rotate the joint",Mat4Transform.rotateAroundZ(0));
 
 			// Build the actual joint sphere
-			m = Mat4.multiply(Mat4Transform.scale(jointRadius,jointRadius,jointRadius), Mat4Transform.translate(0,0.5f,0));
+			m = scaleAboveOrigin(jointRadius,jointRadius,jointRadius);
 				TransformNode makeJoint = new TransformNode("Create joint 1", m);
-					ModelNode joint1Shape = new ModelNode("Joint 1 of lamp", jointSphere);
+					ModelNode joint1Shape = new LODNode("Joint 1 of lamp", jointSpheres, LODNode.DEFAULT_MIN_SIZES);
 
 		// Create the shell of the snail
 		NameNode shell = new NameNode("Shell");
@@ -194,9 +215,9 @@ public class Lamp {
 			TransformNode positionShell = new TransformNode("Move shell into position", m);
 
 			// Build the shell
-			m = Mat4.multiply(Mat4Transform.scale(shellRadius, shellRadius, shellRadius), Mat4Transform.translate(0,0.5f,0));
+			m = scaleAboveOrigin(shellRadius, shellRadius, shellRadius);
 				TransformNode makeShell = new TransformNode("Make the shell", m);
-				ModelNode shellShape = new ModelNode("Shell of the lamp", shellSphere);
+				ModelNode shellShape = new LODNode("Shell of the lamp", shellSpheres, LODNode.DEFAULT_MIN_SIZES);
 
 
 		// Create the arm of the lamp
@@ -207,9 +228,9 @@ public class Lamp {
 			TransformNode positionArm2 = new TransformNode("Move arm into position", m);
 
 			// Build the arm
-			m = Mat4.multiply(Mat4Transform.scale(armWidth,armHeight,armDepth), Mat4Transform.translate(0,0.5f,0));
+			m = scaleAboveOrigin(armWidth,armHeight,armDepth);
 				TransformNode makeArm2 = new TransformNode("Make arm 2", m);
-					ModelNode arm2Shape = new ModelNode("Arm 2 of lamp", armSphere);
+					ModelNode arm2Shape = new LODNode("Arm 2 of lamp", armSpheres, LODNode.DEFAULT_MIN_SIZES);
 
 
 
@@ -225,7 +246,7 @@ public class Lamp {
 			headRotate = new TransformNode("Tilt the head of the lamp",Mat4Transform.rotateAroundZ(0));
 
 			// Build the head
-			m = Mat4.multiply(Mat4Transform.scale(headWidth,headHeight,headDepth), Mat4Transform.translate(0,0.5f,0));
+			m = scaleAboveOrigin(headWidth,headHeight,headDepth);
 				TransformNode makeHead = new TransformNode("Make the head", m);
 				ModelNode headShape = new ModelNode("Head of lamp", headCube);
 
@@ -247,18 +268,18 @@ public class Lamp {
 					m = Mat4Transform.translate(-headWidth/2+(eyeRadius/2),headHeight,zFactor*(headDepth/2-(eyeStemDepth/2)));
 					TransformNode positionEyeStem = new TransformNode("Move stem for eye into position", m);
 
-					m = Mat4.multiply(Mat4Transform.scale(eyeStemWidth,eyeStemHeight,eyeStemDepth), Mat4Transform.translate(0,0.5f,0));
+					m = scaleAboveOrigin(eyeStemWidth,eyeStemHeight,eyeStemDepth);
 						TransformNode makeEyeStem = new TransformNode("Make the stem for eye", m);
-						ModelNode eyeStemShape = new ModelNode("Stem for eye 1",eyeStemSphere);
+						ModelNode eyeStemShape = new LODNode("Stem for eye 1", eyeStemSpheres, LODNode.DEFAULT_MIN_SIZES);
 
 				// Create the eye itself
 				NameNode eye = new NameNode("Eyeball");
 					m = Mat4Transform.translate(0, eyeStemHeight,0);
 						TransformNode positionEye = new TransformNode("Move eyeball into position", m);
 
-					m = Mat4.multiply(Mat4Transform.scale(eyeRadius,eyeRadius,eyeRadius), Mat4Transform.translate(0,0.5f,0));
+					m = scaleAboveOrigin(eyeRadius,eyeRadius,eyeRadius);
 						TransformNode makeEye = new TransformNode("Make the eyeball", m);
-						ModelNode eyeShape = new ModelNode("Eye of lamp", eyeSphere);
+						ModelNode eyeShape = new LODNode("Eye of lamp", eyeSpheres, LODNode.DEFAULT_MIN_SIZES);
 
 
 				// Create a mini hierarchy
@@ -286,7 +307,7 @@ public class Lamp {
 				m = Mat4Transform.translate((headWidth/2)+(lightWidth/2),(headHeight/2)-(lightHeight/2),0);
 				TransformNode positionLight = new TransformNode("Move light into position", m);
 
-				m = Mat4.multiply(Mat4Transform.scale(lightWidth,lightHeight,lightDepth), Mat4Transform.translate(0,0.5f,0));
+				m = scaleAboveOrigin(lightWidth,lightHeight,lightDepth);
 					TransformNode makeLight = new TransformNode("Make the light for the lamp", m);
 					LightNode lightShape = new LightNode("Light of lamp", headLight);
 
@@ -335,6 +356,16 @@ public class Lamp {
 
 	}
 
+	/**
+	 * Scales a unit shape and lifts it
+	 * to sit on the origin, the same as
+	 * scale x translate(0,0.5,0) but
+	 * built in one pass
+	 */
+	private static Mat4 scaleAboveOrigin(float width, float height, float depth) {
+		return Mat4Transform.compose(new Vec3(0,0.5f*height,0), new Quat(), new Vec3(width,height,depth));
+	}
+
 	public SGNode getRoot(){
 		return lampRoot;
 	}
@@ -345,24 +376,44 @@ public class Lamp {
 		// Move the eyes on the lamp
 		for (int i = 0; i < eyeRotateNodes.length; i++){
 			int zFactor = (i == 0) ? 1 : -1;
-			eyeRotateNodes[i].setTransform(Mat4Transform.rotateAroundZ(zFactor*eyeRotate));
+			eyeRotateNodes[i].setTransform(Mat4Transform.rotateAroundZ(zFactor*eyeRotate, eyeTransform));
+		}
+
+		// Start blending towards a newly requested pose
+		LampPose requested = requestedPose;
+		if (requested != null) {
+			requestedPose = null;
+			targetPose = requested;
+			poseStartTime = elapsedTime;
+			baseFrom.set(baseRotation);
+			armFrom.set(armRotation);
+			headFrom.set(headRotation);
 		}
 
-		lampRoot.update();
+		// Blend the joints between the two poses
+		if (targetPose != null) {
+			float t = (float)Math.min(1, Math.abs(elapsedTime-poseStartTime)/POSE_SECONDS);
+			Quat.slerp(baseFrom, targetPose.getBaseRotation(), t, baseRotation);
+			Quat.slerp(armFrom, targetPose.getArmRotation(), t, armRotation);
+			Quat.slerp(headFrom, targetPose.getHeadRotation(), t, headRotation);
+			baseRotate.setTransform(Mat4Transform.compose(NO_TRANSLATION, baseRotation, UNIT_SCALE, poseTransform));
+			jointRotate.setTransform(Mat4Transform.compose(NO_TRANSLATION, armRotation, UNIT_SCALE, poseTransform));
+			headRotate.setTransform(Mat4Transform.compose(NO_TRANSLATION, headRotation, UNIT_SCALE, poseTransform));
+			if (t == 1) {
+				targetPose = null;
+			}
+		}
 	}
 
+	/**
+	 * Move the lamp into a pose, the
+	 * next calls to move() turn the
+	 * joints there over POSE_SECONDS
+	 * @param pose - The index of the pose
+	 * @param elapsedTime - unused, the blend is timed by move()
+	 */
 	public void animate(int pose, double elapsedTime){
-
-		// TODO use elapsedTime to animate transformations
-
-		LampPose currentPose = poses.getPose(pose);
-
-		// Update the transforms
-		baseRotate.setTransform(currentPose.getBaseTransform());
-		jointRotate.setTransform(currentPose.getArmTransform());
-		headRotate.setTransform(currentPose.getHeadTransform());
-		lampRoot.update();
-
+		requestedPose = poses.getPose(pose);
 	}
 
 	public void dispose(GL3 gl) {
@@ -5,37 +5,37 @@ import com.jogamp.opengl.*;
 /**
  * The class to handle a single
  * pose for a lamp, this is made
- * from 3 transforms of the base, arm and head
+ * from 3 rotations of the base, arm and head,
+ * as quaternions so poses can be blended
  * @author Angus Goody
  */
 public class LampPose {
 
-	public static Mat4 noTransform = new Mat4(1);
+	public static final Quat noRotation = new Quat();
 
-	private Mat4 baseTransform, armTransform, headTransform;
+	private Quat baseRotation, armRotation, headRotation;
 	/**
 	 *
-	 * @param gl
-	 * @param baseTransform
-	 * @param armTransform
-	 * @param headTransform
+	 * @param baseRotation
+	 * @param armRotation
+	 * @param headRotation
 	 */
-	public LampPose(Mat4 baseTransform, Mat4 armTransform, Mat4 headTransform) {
-		this.baseTransform = baseTransform;
-		this.armTransform = armTransform;
-		this.headTransform = headTransform;
+	public LampPose(Quat baseRotation, Quat armRotation, Quat headRotation) {
+		this.baseRotation = baseRotation;
+		this.armRotation = armRotation;
+		this.headRotation = headRotation;
 
 	}
 
-	public Mat4 getBaseTransform(){
-		return baseTransform;
+	public Quat getBaseRotation(){
+		return baseRotation;
 	}
 
-	public Mat4 getArmTransform(){
-		return armTransform;
+	public Quat getArmRotation(){
+		return armRotation;
 	}
 
-	public Mat4 getHeadTransform(){
-		return headTransform;
+	public Quat getHeadRotation(){
+		return headRotation;
 	}
 }
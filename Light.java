@@ -9,6 +9,8 @@ public class Light {
   private Vec3 position;
   private Mat4 model;
   private Shader shader;
+  private Uniform.Mat4 modelUniform;
+  private Uniform.Vec3 colourUniform;
   private Camera camera;
   private Vec3[] lightValues;
   protected boolean on;
@@ -64,6 +66,8 @@ public class Light {
     position = new Vec3(3f,2f,1f);
     model = new Mat4(1);
     shader = new Shader(gl, "shaders/light_vs.glsl", "shaders/light_fs.glsl");
+    modelUniform = shader.getMat4("model");
+    colourUniform = shader.getVec3("lightColour");
     fillBuffers(gl);
   }
 
@@ -133,23 +137,50 @@ public class Light {
     }
     model = Mat4.multiply(Mat4Transform.translate(position), model);
 
+    update(model);
     render(gl, model);
   }
 
-  public void render(GL3 gl, Mat4 worldTransform) {
+  /**
+   * Moves the light to the position held in a scene graph node's world transform.
+   * Called from the update pass, so it happens even when the light's node is not drawn.
+   */
+  public void update(Mat4 worldTransform) {
+    worldTransform.getPosition(position);
+  }
 
-    this.position = worldTransform.getPosition();
+  /**
+   * @return The radius of a sphere, centred on the origin in model space, around the light's cube
+   */
+  public float getBoundsRadius() {
+    return 0.8660254f;   // half the diagonal of a unit cube
+  }
 
-    Mat4 mvpMatrix = Mat4.multiply(camera.getPerspectiveMatrix(), Mat4.multiply(camera.getViewMatrix(), worldTransform));
-    
-    shader.use(gl);
-    shader.setFloatArray(gl, "mvpMatrix", mvpMatrix.toFloatArrayForGLSL());
-    shader.setVec3(gl, "lightColour", on ? lightOnColour: lightOffColour);
+  public Shader getShader() {
+    return shader;
+  }
+
+  public int getVertexArrayId() {
+    return vertexArrayId[0];
+  }
+
+  public void render(GL3 gl, Mat4 worldTransform) {
+    render(gl, worldTransform, true);
+  }
+
+  public void render(GL3 gl, Mat4 worldTransform, boolean bindShader) {
+    Scratch scratch = Scratch.get();
+    scratch.push();
+    if (bindShader) {
+      shader.use(gl);
+    }
+    modelUniform.set(gl, worldTransform.toFloatArrayForGLSL(scratch.mat4Array()));
+    scratch.pop();
+    colourUniform.set(gl, on ? lightOnColour: lightOffColour);
 
 
-    gl.glBindVertexArray(vertexArrayId[0]);
+    GLState.get(gl).bindVertexArray(gl, vertexArrayId[0]);
     gl.glDrawElements(GL.GL_TRIANGLES, indices.length, GL.GL_UNSIGNED_INT, 0);
-    gl.glBindVertexArray(0);
   }
 
   public void dispose(GL3 gl) {
@@ -202,7 +233,7 @@ public class Light {
     
   private void fillBuffers(GL3 gl) {
     gl.glGenVertexArrays(1, vertexArrayId, 0);
-    gl.glBindVertexArray(vertexArrayId[0]);
+    GLState.get(gl).bindVertexArray(gl, vertexArrayId[0]);
     gl.glGenBuffers(1, vertexBufferId, 0);
     gl.glBindBuffer(GL.GL_ARRAY_BUFFER, vertexBufferId[0]);
     FloatBuffer fb = Buffers.newDirectFloatBuffer(vertices);
@@ -219,7 +250,7 @@ public class Light {
     IntBuffer ib = Buffers.newDirectIntBuffer(indices);
     gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, elementBufferId[0]);
     gl.glBufferData(GL.GL_ELEMENT_ARRAY_BUFFER, Integer.BYTES * indices.length, ib, GL.GL_STATIC_DRAW);
-    gl.glBindVertexArray(0);
+    GLState.get(gl).bindVertexArray(gl, 0);
   } 
 
 }
\ No newline at end of file
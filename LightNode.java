@@ -1,4 +1,5 @@
 import com.jogamp.opengl.*;
+import gmaths.Frustum;
 import gmaths.Vec3;
 
 /**
@@ -9,12 +10,29 @@ import gmaths.Vec3;
 public class LightNode extends SGNode {
 
 	protected Light light;
+	private Vec3 lightCentre = new Vec3();
+	private float lightRadius;
 
 	public LightNode(String name, Light l) {
 		super(name);
 		light = l;
 	}
 
+	/**
+	 * Keep the light in step with the node,
+	 * even when the node is culled
+	 */
+	protected void worldTransformChanged() {
+		light.update(worldTransform);
+	}
+
+	protected void updateBounds() {
+		worldTransform.getPosition(lightCentre);
+		lightRadius = light.getBoundsRadius()*worldTransform.getMaxScale();
+		super.updateBounds();
+		includeBounds(lightCentre, lightRadius);
+	}
+
 	public void draw(GL3 gl) {
 		light.render(gl, worldTransform);
 		for (int i=0; i<children.size(); i++) {
@@ -22,4 +40,22 @@ public class LightNode extends SGNode {
 		}
 	}
 
+	public int collect(RenderQueue queue, Frustum frustum) {
+		if (!frustum.intersectsSphere(boundsCentre, boundsRadius)) {
+			return subtreeSize();
+		}
+		int culled = 0;
+		if (frustum.intersectsSphere(lightCentre, lightRadius)) {
+			queue.add(this, light.getShader(), light.getVertexArrayId(), lightCentre);
+		}
+		else {
+			culled++;
+		}
+		return culled + collectChildren(queue, frustum);
+	}
+
+	protected void render(GL3 gl, boolean bindShader, boolean bindTextures) {
+		light.render(gl, worldTransform, bindShader);
+	}
+
 }
\ No newline at end of file
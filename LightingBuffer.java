@@ -0,0 +1,95 @@
+import gmaths.*;
+import java.nio.*;
+import java.util.Arrays;
+import com.jogamp.common.nio.*;
+import com.jogamp.opengl.*;
+
+/**
+ * The world lights and spot lights in a uniform buffer, filled once per frame and shared by
+ * every program that declares the Lighting block (new_fs, egg_fs and window_fs). Shader binds
+ * the block to BINDING when it links. The block, in std140 layout:
+ * <pre>
+ *   layout(std140) uniform Lighting {
+ *     Light worldLights[2];      // 64 bytes each: position, ambient, diffuse, specular, each padded to 16
+ *     SpotLight SpotLights[2];   // 80 bytes each: position, constant, direction, linear, ambient,
+ *                                //                quadratic, diffuse, cutOff, specular, outerCutOff
+ *   };
+ * </pre>
+ * A float after a vec3 fills the vec3's padding, which is why the spot light members are in that order.
+ */
+public class LightingBuffer {
+
+  public static final String BLOCK_NAME = "Lighting";
+  public static final int BINDING = 0;
+  public static final int MAX_WORLD_LIGHTS = 2;
+  public static final int MAX_SPOT_LIGHTS = 2;
+
+  private static final int LIGHT_FLOATS = 16;
+  private static final int SPOT_LIGHT_FLOATS = 20;
+  private static final int SIZE_FLOATS = MAX_WORLD_LIGHTS*LIGHT_FLOATS + MAX_SPOT_LIGHTS*SPOT_LIGHT_FLOATS;
+
+  private int[] bufferId = new int[1];
+  private float[] data = new float[SIZE_FLOATS];
+  private FloatBuffer buffer = Buffers.newDirectFloatBuffer(SIZE_FLOATS);
+
+  public LightingBuffer(GL3 gl) {
+    gl.glGenBuffers(1, bufferId, 0);
+    gl.glBindBuffer(GL2ES3.GL_UNIFORM_BUFFER, bufferId[0]);
+    gl.glBufferData(GL2ES3.GL_UNIFORM_BUFFER, Float.BYTES * SIZE_FLOATS, null, GL.GL_DYNAMIC_DRAW);
+    gl.glBindBufferBase(GL2ES3.GL_UNIFORM_BUFFER, BINDING, bufferId[0]);
+  }
+
+  /**
+   * Uploads the lights as they are now. Call once per frame, after the lights have moved.
+   *
+   * @param spotLights The spot lights, or null for none. Unused slots are zeroed;
+   *                   each model's program is compiled for how many it uses (NR_SPOT_LIGHTS).
+   */
+  public void update(GL3 gl, Light[] worldLights, SpotLight[] spotLights) {
+    if (worldLights.length > MAX_WORLD_LIGHTS || (spotLights != null && spotLights.length > MAX_SPOT_LIGHTS)) {
+      throw new IllegalArgumentException("the Lighting block holds "+MAX_WORLD_LIGHTS+" world lights and "
+          +MAX_SPOT_LIGHTS+" spot lights");
+    }
+    Arrays.fill(data, 0);
+    for (int i=0; i<worldLights.length; i++) {
+      Light light = worldLights[i];
+      int o = i*LIGHT_FLOATS;
+      put(o, light.getPosition());
+      put(o+4, light.getMaterial().getAmbient());
+      put(o+8, light.getMaterial().getDiffuse());
+      put(o+12, light.getMaterial().getSpecular());
+    }
+    int n = spotLights == null ? 0 : spotLights.length;
+    for (int i=0; i<n; i++) {
+      SpotLight light = spotLights[i];
+      Vec3 equation = light.getEquation();
+      int o = MAX_WORLD_LIGHTS*LIGHT_FLOATS + i*SPOT_LIGHT_FLOATS;
+      put(o, light.getPosition());
+      data[o+3] = equation.z;   // constant
+      put(o+4, light.getDirection());
+      data[o+7] = equation.y;   // linear
+      put(o+8, light.getMaterial().getAmbient());
+      data[o+11] = equation.x;  // quadratic
+      put(o+12, light.getMaterial().getDiffuse());
+      data[o+15] = light.getCutoff();
+      put(o+16, light.getMaterial().getSpecular());
+      data[o+19] = light.getOuterCutoff();
+    }
+    buffer.clear();
+    buffer.put(data);
+    buffer.flip();
+    gl.glBindBuffer(GL2ES3.GL_UNIFORM_BUFFER, bufferId[0]);
+    gl.glBufferSubData(GL2ES3.GL_UNIFORM_BUFFER, 0, Float.BYTES * SIZE_FLOATS, buffer);
+  }
+
+  private void put(int offset, Vec3 v) {
+    data[offset] = v.x;
+    data[offset+1] = v.y;
+    data[offset+2] = v.z;
+  }
+
+  public void dispose(GL3 gl) {
+    gl.glDeleteBuffers(1, bufferId, 0);
+  }
+
+}
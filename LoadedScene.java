@@ -0,0 +1,182 @@
+import gmaths.*;
+import java.util.ArrayList;
+import java.util.Map;
+import com.jogamp.opengl.*;
+import com.jogamp.opengl.util.texture.*;
+
+/**
+ * The scene graph and GL objects built from a SceneFile. Nodes can be found with
+ * getRoot().find(path), and the models, shaders and poses by the names in the file.
+ */
+public class LoadedScene {
+
+  private SceneFile file;
+  private SGNode root;
+  private Mesh[] meshes;
+  private Texture[] textures;
+  private Shader[] shaders;
+  private Model[] models;
+  private ArrayList<StaticNode> staticNodes = new ArrayList<StaticNode>();
+
+  /**
+   * @param lights The lights the file refers to, by name
+   */
+  public LoadedScene(GL3 gl, SceneFile file, Camera camera, Map<String, Light> lights) {
+    this.file = file;
+
+    meshes = new Mesh[file.meshes.size()];
+    for (int i=0; i<meshes.length; i++) {
+      meshes[i] = builtInMesh(gl, file.meshes.get(i).source);
+    }
+    textures = new Texture[file.textures.size()];
+    for (int i=0; i<textures.length; i++) {
+      textures[i] = TextureLibrary.loadTexture(gl, file.textures.get(i).path);
+    }
+    shaders = new Shader[file.shaders.size()];
+    for (int i=0; i<shaders.length; i++) {
+      SceneFile.ShaderDecl s = file.shaders.get(i);
+      shaders[i] = new Shader(gl, s.vertexPath, s.fragmentPath);
+      shaders[i].setAlphaTested(s.alphaTested);
+    }
+    Material[] materials = new Material[file.materials.size()];
+    for (int i=0; i<materials.length; i++) {
+      float[] v = file.materials.get(i).values;
+      materials[i] = new Material(new Vec3(v[0], v[1], v[2]), new Vec3(v[3], v[4], v[5]), new Vec3(v[6], v[7], v[8]), v[9]);
+    }
+
+    // models declared under the same lights statement share one array
+    Light[] allLights = new Light[file.lightNames.size()];
+    for (int i=0; i<allLights.length; i++) {
+      allLights[i] = lights.get(file.lightNames.get(i));
+    }
+    models = new Model[file.models.size()];
+    int[] lastLights = null, lastSpotLights = null;
+    Light[] worldLights = null;
+    SpotLight[] spotLights = null;
+    for (int i=0; i<models.length; i++) {
+      SceneFile.ModelDecl m = file.models.get(i);
+      if (m.lights != lastLights) {
+        lastLights = m.lights;
+        worldLights = new Light[m.lights.length];
+        for (int j=0; j<worldLights.length; j++) {
+          worldLights[j] = light(allLights, m.lights[j]);
+        }
+      }
+      if (m.spotLights != lastSpotLights) {
+        lastSpotLights = m.spotLights;
+        spotLights = m.spotLights == null ? null : new SpotLight[m.spotLights.length];
+        for (int j=0; spotLights != null && j<spotLights.length; j++) {
+          spotLights[j] = (SpotLight)light(allLights, m.spotLights[j]);
+        }
+      }
+      models[i] = new Model(gl, camera, worldLights, spotLights, shaders[m.shader], materials[m.material], new Mat4(1),
+          meshes[m.mesh], m.texture1 < 0 ? null : textures[m.texture1], m.texture2 < 0 ? null : textures[m.texture2]);
+    }
+
+    SGNode[] nodes = new SGNode[file.nodeCount];
+    for (int i=0; i<nodes.length; i++) {
+      String name = file.names[i];
+      switch (file.kinds[i]) {
+        case SceneFile.STATIC:
+          StaticNode staticNode = new StaticNode(name);
+          staticNodes.add(staticNode);
+          nodes[i] = staticNode;
+          break;
+        case SceneFile.TRANSFORM:
+          nodes[i] = new TransformNode(name, new Mat4().set(file.matrices, i*16));
+          break;
+        case SceneFile.SHAPE:
+          nodes[i] = new ModelNode(name, models[file.refs[i]]);
+          break;
+        case SceneFile.LIGHT:
+          nodes[i] = new LightNode(name, light(allLights, file.refs[i]));
+          break;
+        default:
+          nodes[i] = new NameNode(name);
+          break;
+      }
+      if (file.parents[i] >= 0) {
+        nodes[file.parents[i]].addChild(nodes[i]);
+      }
+    }
+    root = nodes[0];
+    root.updateParallel();
+  }
+
+  private Light light(Light[] allLights, int i) {
+    if (allLights[i] == null) {
+      throw new IllegalArgumentException("no light called "+file.lightNames.get(i));
+    }
+    return allLights[i];
+  }
+
+  private static Mesh builtInMesh(GL3 gl, String source) {
+    switch (source) {
+      case "Cube":   return MeshLibrary.get(gl, Cube.generate());
+      case "Sphere": return MeshLibrary.get(gl, Sphere.generate(30, 30));
+      default:       return MeshLibrary.get(gl, TwoTriangles.generate());
+    }
+  }
+
+  public SGNode getRoot() {
+    return root;
+  }
+
+  /**
+   * Bakes the static nodes. Call once the scene is in its final place in the scene graph.
+   */
+  public void bake(GL3 gl) {
+    for (StaticNode node : staticNodes) {
+      node.bake(gl);
+    }
+  }
+
+  /**
+   * @return The model with this name in the file, or null
+   */
+  public Model getModel(String name) {
+    int i = indexOf(file.models, name);
+    return i < 0 ? null : models[i];
+  }
+
+  /**
+   * @return The shader with this name in the file, or null
+   */
+  public Shader getShader(String name) {
+    int i = indexOf(file.shaders, name);
+    return i < 0 ? null : shaders[i];
+  }
+
+  /**
+   * @return A copy of the pose with this name in the file, or null
+   */
+  public Mat4 getPose(String name) {
+    int i = indexOf(file.poses, name);
+    return i < 0 ? null : new Mat4().set(file.poses.get(i).matrix, 0);
+  }
+
+  private static int indexOf(ArrayList<? extends SceneFile.Decl> declarations, String name) {
+    for (int i=0; i<declarations.size(); i++) {
+      if (declarations.get(i).name.equals(name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Frees the textures and baked meshes. The other meshes belong to MeshLibrary.
+   */
+  public void dispose(GL3 gl) {
+    for (Texture texture : textures) {
+      if (texture != null) {
+        GLState.get(gl).textureDeleted(texture.getTextureObject());
+        texture.destroy(gl);
+      }
+    }
+    for (StaticNode node : staticNodes) {
+      node.dispose(gl);
+    }
+  }
+
+}
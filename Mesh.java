@@ -14,22 +14,138 @@ public class Mesh {
   private int[] vertexBufferId = new int[1];
   private int[] vertexArrayId = new int[1];
   private int[] elementBufferId = new int[1];
+  private int[] instanceBufferId;   // created by the first renderInstanced
+  private FloatBuffer instanceData;
+  private Vec3 boundsCentre = new Vec3();
+  private float boundsRadius;
+  private Vec3 boundsMin = new Vec3();
+  private Vec3 boundsMax = new Vec3();
+  private TriangleBVH triangleBVH;   // built by the first getTriangleBVH
+  private boolean disposed;
+  private boolean shared;   // made by MeshLibrary, which alone deletes it
 
   public Mesh(GL3 gl, float[] vertices, int[] indices) {
     this.vertices = vertices;
     this.indices = indices;
+    computeBounds();
     fillBuffers(gl);
   }
 
+  /**
+   * @return The centre of a sphere, in model space, that contains every vertex
+   */
+  public Vec3 getBoundsCentre() {
+    return boundsCentre;
+  }
+
+  public float getBoundsRadius() {
+    return boundsRadius;
+  }
+
+  /**
+   * @return The corner of the vertices' model-space bounding box with the smallest x, y and z
+   */
+  public Vec3 getBoundsMin() {
+    return boundsMin;
+  }
+
+  public Vec3 getBoundsMax() {
+    return boundsMax;
+  }
+
+  /**
+   * @return A hierarchy over the mesh's triangles, for raycasts. It is built on the first call.
+   */
+  public TriangleBVH getTriangleBVH() {
+    if (triangleBVH == null) {
+      triangleBVH = new TriangleBVH(vertices, indices, vertexStride);
+    }
+    return triangleBVH;
+  }
+
+  // A sphere around the centre of the vertices' bounding box
+  private void computeBounds() {
+    float minX = Float.POSITIVE_INFINITY, minY = minX, minZ = minX;
+    float maxX = Float.NEGATIVE_INFINITY, maxY = maxX, maxZ = maxX;
+    for (int i=0; i<vertices.length; i+=vertexStride) {
+      minX = Math.min(minX, vertices[i]);
+      minY = Math.min(minY, vertices[i+1]);
+      minZ = Math.min(minZ, vertices[i+2]);
+      maxX = Math.max(maxX, vertices[i]);
+      maxY = Math.max(maxY, vertices[i+1]);
+      maxZ = Math.max(maxZ, vertices[i+2]);
+    }
+    boundsMin.set(minX, minY, minZ);
+    boundsMax.set(maxX, maxY, maxZ);
+    boundsCentre.set((minX+maxX)*0.5f, (minY+maxY)*0.5f, (minZ+maxZ)*0.5f);
+    float r2 = 0;
+    for (int i=0; i<vertices.length; i+=vertexStride) {
+      float dx = vertices[i]-boundsCentre.x, dy = vertices[i+1]-boundsCentre.y, dz = vertices[i+2]-boundsCentre.z;
+      r2 = Math.max(r2, dx*dx + dy*dy + dz*dz);
+    }
+    boundsRadius = (float)Math.sqrt(r2);
+  }
+
+  /**
+   * @return The vertex data: x,y,z, normal x,y,z, s,t for each vertex
+   */
+  public float[] getVertices() {
+    return vertices;
+  }
+
+  public int[] getIndices() {
+    return indices;
+  }
+
+  public int getVertexArrayId() {
+    return vertexArrayId[0];
+  }
+
+  /**
+   * Draws the mesh. Its vertex array is left bound, so drawing it again binds nothing (see GLState).
+   */
   public void render(GL3 gl) {
-    gl.glBindVertexArray(vertexArrayId[0]);
+    GLState.get(gl).bindVertexArray(gl, vertexArrayId[0]);
     gl.glDrawElements(GL.GL_TRIANGLES, indices.length, GL.GL_UNSIGNED_INT, 0);
-    gl.glBindVertexArray(0);
+  }
+
+  /**
+   * Draws the mesh once per model matrix, in one call.
+   *
+   * @param modelMatrices The model matrices, packed 16 floats each in GLSL order
+   * @param count The number of instances
+   */
+  public void renderInstanced(GL3 gl, float[] modelMatrices, int count) {
+    GLState.get(gl).bindVertexArray(gl, vertexArrayId[0]);
+    if (instanceBufferId == null) {
+      fillInstanceBuffer(gl);
+    }
+    if (instanceData == null || instanceData.capacity() < count*16) {
+      instanceData = Buffers.newDirectFloatBuffer(Math.max(count, 16)*16);
+    }
+    instanceData.clear();
+    instanceData.put(modelMatrices, 0, count*16);
+    instanceData.flip();
+    gl.glBindBuffer(GL.GL_ARRAY_BUFFER, instanceBufferId[0]);
+    gl.glBufferData(GL.GL_ARRAY_BUFFER, Float.BYTES * count*16, instanceData, GL2ES2.GL_STREAM_DRAW);
+    gl.glDrawElementsInstanced(GL.GL_TRIANGLES, indices.length, GL.GL_UNSIGNED_INT, 0, count);
+  }
+
+  // A mat4 attribute takes four locations, one per column, each advancing once per instance
+  private void fillInstanceBuffer(GL3 gl) {
+    instanceBufferId = new int[1];
+    gl.glGenBuffers(1, instanceBufferId, 0);
+    gl.glBindBuffer(GL.GL_ARRAY_BUFFER, instanceBufferId[0]);
+    for (int i=0; i<4; ++i) {
+      gl.glVertexAttribPointer(3+i, 4, GL.GL_FLOAT, false, 16*Float.BYTES, i*4*Float.BYTES);
+      gl.glEnableVertexAttribArray(3+i);
+      gl.glVertexAttribDivisor(3+i, 1);
+    }
   }
 
   private void fillBuffers(GL3 gl) {
     gl.glGenVertexArrays(1, vertexArrayId, 0);
-    gl.glBindVertexArray(vertexArrayId[0]);
+    GLState.get(gl).bindVertexArray(gl, vertexArrayId[0]);
     gl.glGenBuffers(1, vertexBufferId, 0);
     gl.glBindBuffer(GL.GL_ARRAY_BUFFER, vertexBufferId[0]);
     FloatBuffer fb = Buffers.newDirectFloatBuffer(vertices);
@@ -65,10 +181,32 @@ public class Mesh {
     //gl.glBindVertexArray(0); // remove this so shader can be validated. Should be ok as any new object will bind its own VAO
   }
 
+  /**
+   * @return true if the mesh belongs to MeshLibrary, so its users must not dispose it
+   */
+  public boolean isShared() {
+    return shared;
+  }
+
+  void setShared() {
+    shared = true;
+  }
+
+  /**
+   * Deletes the GL buffers. Calls after the first do nothing.
+   */
   public void dispose(GL3 gl) {
+    if (disposed) {
+      return;
+    }
+    disposed = true;
     gl.glDeleteBuffers(1, vertexBufferId, 0);
     gl.glDeleteVertexArrays(1, vertexArrayId, 0);
+    GLState.get(gl).vertexArrayDeleted(vertexArrayId[0]);
     gl.glDeleteBuffers(1, elementBufferId, 0);
+    if (instanceBufferId != null) {
+      gl.glDeleteBuffers(1, instanceBufferId, 0);
+    }
   }
 
 }
\ No newline at end of file
@@ -0,0 +1,87 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * The vertex and index arrays for a Mesh, as made by the generators in Sphere, Cylinder,
+ * Capsule, Torus and Cube. Generated data is cached by its parameters and shared by
+ * everything that asks for the same shape, so it must not be modified.
+ */
+public final class MeshData {
+
+  // Shapes with at least this many vertices are generated a row at a time on the common ForkJoinPool
+  public static final int PARALLEL_VERTICES = 1 << 14;
+
+  private static final ConcurrentHashMap<String, MeshData> cache = new ConcurrentHashMap<String, MeshData>();
+
+  public final String key;
+  public final float[] vertices;   // x,y,z, nx,ny,nz, s,t
+  public final int[] indices;
+
+  MeshData(String key, float[] vertices, int[] indices) {
+    this.key = key;
+    this.vertices = vertices;
+    this.indices = indices;
+  }
+
+  /**
+   * @return The data cached under key, generating it the first time
+   */
+  static MeshData cached(String key, Function<String, MeshData> generator) {
+    return cache.computeIfAbsent(key, generator);
+  }
+
+  /**
+   * Calls row for each row of a grid of vertices, in parallel if the grid is large.
+   */
+  static void forEachRow(int rows, int columns, IntConsumer row) {
+    if (rows*columns >= PARALLEL_VERTICES) {
+      IntStream.range(0, rows).parallel().forEach(row);
+    }
+    else {
+      for (int j=0; j<rows; ++j) {
+        row.accept(j);
+      }
+    }
+  }
+
+  /**
+   * The triangles for a grid of vertices stored row by row, anticlockwise when the rows
+   * run upwards and the columns run to the right.
+   */
+  static int[] gridIndices(int columns, int rows) {
+    int[] indices = new int[(columns-1)*(rows-1)*6];
+    forEachRow(rows-1, columns, j -> {
+      int base = j*(columns-1)*6;
+      for (int i = 0; i<columns-1; ++i) {
+        indices[base + i*6+0] = j*columns+i;
+        indices[base + i*6+1] = j*columns+i+1;
+        indices[base + i*6+2] = (j+1)*columns+i+1;
+        indices[base + i*6+3] = j*columns+i;
+        indices[base + i*6+4] = (j+1)*columns+i+1;
+        indices[base + i*6+5] = (j+1)*columns+i;
+      }
+    });
+    return indices;
+  }
+
+  static void put(float[] vertices, int vertex, float x, float y, float z, float nx, float ny, float nz, float s, float t) {
+    int base = vertex*8;
+    vertices[base] = x;
+    vertices[base+1] = y;
+    vertices[base+2] = z;
+    vertices[base+3] = nx;
+    vertices[base+4] = ny;
+    vertices[base+5] = nz;
+    vertices[base+6] = s;
+    vertices[base+7] = t;
+  }
+
+  static void checkAtLeast(String name, int value, int minimum) {
+    if (value < minimum) {
+      throw new IllegalArgumentException(name+" must be at least "+minimum+", not "+value);
+    }
+  }
+
+}
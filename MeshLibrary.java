@@ -0,0 +1,78 @@
+import java.lang.ref.WeakReference;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import com.jogamp.opengl.*;
+
+/**
+ * Shares one Mesh, and so one set of GL buffers, between everything that draws the same
+ * MeshData, e.g. MeshLibrary.get(gl, Sphere.generate(14, 14)). Buffers belong to a GL
+ * context, so there is one library per context, as with GLState. The meshes belong to the
+ * library, are marked shared, and are only deleted by dispose().
+ */
+public final class MeshLibrary {
+
+  private static final Map<Object, MeshLibrary> libraries = new WeakHashMap<Object, MeshLibrary>();
+  private static volatile MeshLibrary last;   // the last one looked up, the only one in a single-context program
+
+  private final WeakReference<Object> context;   // weak, or the map's entry would keep its own key alive
+  private final IdentityHashMap<MeshData, Mesh> meshes = new IdentityHashMap<MeshData, Mesh>();
+
+  private MeshLibrary(Object context) {
+    this.context = new WeakReference<Object>(context);
+  }
+
+  private static MeshLibrary of(GL gl) {
+    Object context = gl.getContext();
+    if (context == null) {
+      context = gl;
+    }
+    MeshLibrary library = last;
+    if (library != null && library.context.get() == context) {
+      return library;
+    }
+    synchronized (libraries) {
+      library = libraries.get(context);
+      if (library == null) {
+        library = new MeshLibrary(context);
+        libraries.put(context, library);
+      }
+    }
+    last = library;
+    return library;
+  }
+
+  public static Mesh get(GL3 gl, MeshData data) {
+    MeshLibrary library = of(gl);
+    Mesh mesh = library.meshes.get(data);
+    if (mesh == null) {
+      mesh = new Mesh(gl, data.vertices, data.indices);
+      mesh.setShared();
+      library.meshes.put(data, mesh);
+    }
+    return mesh;
+  }
+
+  /**
+   * @return The number of meshes, i.e. vertex arrays, the library has made in gl's context
+   */
+  public static int size(GL3 gl) {
+    return of(gl).meshes.size();
+  }
+
+  /**
+   * Deletes the meshes of gl's context and forgets them, so a later get() makes new ones.
+   */
+  public static void dispose(GL3 gl) {
+    MeshLibrary library = of(gl);
+    for (Mesh mesh : library.meshes.values()) {
+      mesh.dispose(gl);
+    }
+    library.meshes.clear();
+    synchronized (libraries) {
+      libraries.remove(library.context);
+    }
+    last = null;
+  }
+
+}
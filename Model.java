@@ -1,4 +1,6 @@
 import gmaths.*;
+import java.util.HashMap;
+import java.util.Map;
 
 import com.jogamp.common.nio.*;
 import com.jogamp.opengl.*;
@@ -15,6 +17,10 @@ public class Model {
   private Camera camera;
   private Light[] worldLights;
   private SpotLight[] spotLights;
+  private Shader instancedShader;   // null if the shader has no instanced variant
+  private Uniforms uniforms, instancedUniforms;
+  private final int id = nextId++;
+  private static int nextId;
 
   public Model(GL3 gl, Camera camera, Light[] worldLights, SpotLight[] spotLights, Shader shader, Material material, Mat4 modelMatrix, Mesh mesh, Texture textureId1, Texture textureId2) {
 
@@ -28,6 +34,84 @@ public class Model {
     this.spotLights = spotLights;
     this.textureId1 = textureId1;
     this.textureId2 = textureId2;
+    findShaders(gl);
+  }
+
+  // The program is compiled for the number of lights, so this is redone when they change
+  private void findShaders(GL3 gl) {
+    if (shader != null) {
+      Map<String, String> lights = new HashMap<String, String>();
+      lights.put("NR_WORLD_LIGHTS", String.valueOf(worldLights.length));
+      lights.put("NR_SPOT_LIGHTS", String.valueOf(spotLights == null ? 0 : spotLights.length));
+      shader = shader.getVariant(gl, lights);
+      instancedShader = shader.getInstancedVariant(gl);
+      uniforms = new Uniforms(shader);
+      instancedUniforms = instancedShader == null ? null : new Uniforms(instancedShader);
+    }
+  }
+
+  /**
+   * The handles for every uniform a model sets, so a draw does no lookups or string formatting.
+   */
+  private class Uniforms {
+    final Uniform.Mat4 model;
+    final Uniform.Vec3[] lightPosition, lightAmbient, lightDiffuse, lightSpecular;
+    final Uniform.Vec3[] spotPosition, spotAmbient, spotDiffuse, spotSpecular, spotDirection;
+    final Uniform.Float[] spotCutOff, spotOuterCutOff, spotQuadratic, spotLinear, spotConstant;
+    final Uniform.Vec3 materialAmbient, materialDiffuse, materialSpecular;
+    final Uniform.Float materialShininess;
+    final Uniform.Int firstTexture, secondTexture;
+
+    Uniforms(Shader shader) {
+      model = shader.getMat4("model");
+      // Shaders with the Lighting block read the lights from the LightingBuffer instead
+      boolean lightingBlock = shader.hasBlock(LightingBuffer.BLOCK_NAME);
+
+      int n = lightingBlock ? 0 : worldLights.length;
+      lightPosition = new Uniform.Vec3[n];
+      lightAmbient = new Uniform.Vec3[n];
+      lightDiffuse = new Uniform.Vec3[n];
+      lightSpecular = new Uniform.Vec3[n];
+      for (int i = 0; i < n; i++) {
+        String light = "worldLights["+i+"]";
+        lightPosition[i] = shader.getVec3(light+".position");
+        lightAmbient[i] = shader.getVec3(light+".ambient");
+        lightDiffuse[i] = shader.getVec3(light+".diffuse");
+        lightSpecular[i] = shader.getVec3(light+".specular");
+      }
+
+      n = spotLights == null || lightingBlock ? 0 : spotLights.length;
+      spotPosition = new Uniform.Vec3[n];
+      spotAmbient = new Uniform.Vec3[n];
+      spotDiffuse = new Uniform.Vec3[n];
+      spotSpecular = new Uniform.Vec3[n];
+      spotDirection = new Uniform.Vec3[n];
+      spotCutOff = new Uniform.Float[n];
+      spotOuterCutOff = new Uniform.Float[n];
+      spotQuadratic = new Uniform.Float[n];
+      spotLinear = new Uniform.Float[n];
+      spotConstant = new Uniform.Float[n];
+      for (int i = 0; i < n; i++) {
+        String light = "SpotLights["+i+"]";
+        spotPosition[i] = shader.getVec3(light+".position");
+        spotAmbient[i] = shader.getVec3(light+".ambient");
+        spotDiffuse[i] = shader.getVec3(light+".diffuse");
+        spotSpecular[i] = shader.getVec3(light+".specular");
+        spotDirection[i] = shader.getVec3(light+".direction");
+        spotCutOff[i] = shader.getFloat(light+".cutOff");
+        spotOuterCutOff[i] = shader.getFloat(light+".outerCutOff");
+        spotQuadratic[i] = shader.getFloat(light+".quadratic");
+        spotLinear[i] = shader.getFloat(light+".linear");
+        spotConstant[i] = shader.getFloat(light+".constant");
+      }
+
+      materialAmbient = shader.getVec3("material.ambient");
+      materialDiffuse = shader.getVec3("material.diffuse");
+      materialSpecular = shader.getVec3("material.specular");
+      materialShininess = shader.getFloat("material.shininess");
+      firstTexture = shader.getInt("first_texture");
+      secondTexture = shader.getInt("second_texture");
+    }
   }
 
 
@@ -53,6 +137,49 @@ public class Model {
 
 
 
+  public Mesh getMesh() {
+    return mesh;
+  }
+
+  public Shader getShader() {
+    return shader;
+  }
+
+  public Texture getTexture1() {
+    return textureId1;
+  }
+
+  public Texture getTexture2() {
+    return textureId2;
+  }
+
+  /**
+   * @return A number unique to this model, for sorting draws
+   */
+  public int getId() {
+    return id;
+  }
+
+  public Shader getInstancedShader() {
+    return instancedShader;
+  }
+
+  /**
+   * @return A model that looks like this one but draws a different mesh
+   */
+  public Model withMesh(GL3 gl, Mesh mesh) {
+    return new Model(gl, camera, worldLights, spotLights, shader, material, new Mat4(1), mesh, textureId1, textureId2);
+  }
+
+  /**
+   * @return true if other sets exactly the same shader state, so the two can share one draw
+   */
+  public boolean sharesStateWith(Model other) {
+    return shader == other.shader && material == other.material && camera == other.camera
+        && textureId1 == other.textureId1 && textureId2 == other.textureId2
+        && worldLights == other.worldLights && spotLights == other.spotLights;
+  }
+
   public void setModelMatrix(Mat4 m) {
     modelMatrix = m;
   }
@@ -61,87 +188,113 @@ public class Model {
     this.camera = camera;
   }
 
-  public void setWorldLights(Light[] worldLights) {
+  public void setWorldLights(GL3 gl, Light[] worldLights) {
     this.worldLights = worldLights;
+    findShaders(gl);
   }
 
-  public void setSpotLights(SpotLight[] spotLights) {
+  public void setSpotLights(GL3 gl, SpotLight[] spotLights) {
     this.spotLights = spotLights;
+    findShaders(gl);
   }
 
 
   public void render(GL3 gl, Mat4 modelMatrix) {
-    Mat4 mvpMatrix = Mat4.multiply(camera.getPerspectiveMatrix(), Mat4.multiply(camera.getViewMatrix(), modelMatrix));
-    shader.use(gl);
-    shader.setFloatArray(gl, "model", modelMatrix.toFloatArrayForGLSL());
-    shader.setFloatArray(gl, "mvpMatrix", mvpMatrix.toFloatArrayForGLSL());
+    render(gl, modelMatrix, true, true);
+  }
 
-    shader.setVec3(gl, "viewPos", camera.getPosition());
+  /**
+   * Renders the model, optionally leaving out the program and texture binds when
+   * the caller knows the previous draw left the same ones bound (see RenderQueue).
+   * The view and projection come from the CameraBuffer.
+   */
+  public void render(GL3 gl, Mat4 modelMatrix, boolean bindShader, boolean bindTextures) {
+    Scratch scratch = Scratch.get();
+    scratch.push();
+    if (bindShader) {
+      shader.use(gl);
+    }
+    uniforms.model.set(gl, modelMatrix.toFloatArrayForGLSL(scratch.mat4Array()));
+    scratch.pop();
 
+    setUniforms(gl, uniforms, bindTextures);
+    mesh.render(gl);
+  }
+
+  /**
+   * Renders the model once for each model matrix with a single instanced draw,
+   * using the instanced variant of its shader.
+   *
+   * @param modelMatrices The model matrices, packed 16 floats each in GLSL order
+   * @param count The number of instances
+   */
+  public void renderInstanced(GL3 gl, float[] modelMatrices, int count, boolean bindShader, boolean bindTextures) {
+    if (bindShader) {
+      instancedShader.use(gl);
+    }
+    setUniforms(gl, instancedUniforms, bindTextures);
+    mesh.renderInstanced(gl, modelMatrices, count);
+  }
+
+  // Everything but the matrices
+  private void setUniforms(GL3 gl, Uniforms u, boolean bindTextures) {
     // ============ Set the lighting for each world light =================
 
-    // Only render a uniform array if we need so we can reuse this with other shaders
+    // There are no handles when the lights come from the LightingBuffer, and the
+    // program's loops were compiled for the number of lights
 
     // TODO maybe extend shader class to handle more lights?
-    if (worldLights.length > 1) {
-      for (int i = 0; i < worldLights.length; i++) {
-        Light currentLight = worldLights[i];
-        shader.setVec3(gl, String.format("worldLights[%s].position", i), currentLight.getPosition());
-        shader.setVec3(gl, String.format("worldLights[%s].ambient", i), currentLight.getMaterial().getAmbient());
-        shader.setVec3(gl, String.format("worldLights[%s].diffuse", i), currentLight.getMaterial().getDiffuse());
-        shader.setVec3(gl, String.format("worldLights[%s].specular", i), currentLight.getMaterial().getSpecular());
-
-      }
-    }else{
-      Light light = worldLights[0];
-      shader.setVec3(gl, "light.position", light.getPosition());
-      shader.setVec3(gl, "light.ambient", light.getMaterial().getAmbient());
-      shader.setVec3(gl, "light.diffuse", light.getMaterial().getDiffuse());
-      shader.setVec3(gl, "light.specular", light.getMaterial().getSpecular());
+    for (int i = 0; i < u.lightPosition.length; i++) {
+      Light currentLight = worldLights[i];
+      u.lightPosition[i].set(gl, currentLight.getPosition());
+      u.lightAmbient[i].set(gl, currentLight.getMaterial().getAmbient());
+      u.lightDiffuse[i].set(gl, currentLight.getMaterial().getDiffuse());
+      u.lightSpecular[i].set(gl, currentLight.getMaterial().getSpecular());
     }
 
     // ============ Set the lighting for each point light =================
 
     if (spotLights != null)
     {
-      for (int i = 0; i < spotLights.length; i++) {
+      for (int i = 0; i < u.spotPosition.length; i++) {
         SpotLight currentLight = spotLights[i];
 
-        shader.setVec3(gl, String.format("SpotLights[%s].position", i), currentLight.getPosition());
-        shader.setVec3(gl, String.format("SpotLights[%s].ambient", i), currentLight.getMaterial().getAmbient());
-        shader.setVec3(gl, String.format("SpotLights[%s].diffuse", i), currentLight.getMaterial().getDiffuse());
-        shader.setVec3(gl, String.format("SpotLights[%s].specular", i), currentLight.getMaterial().getSpecular());
+        u.spotPosition[i].set(gl, currentLight.getPosition());
+        u.spotAmbient[i].set(gl, currentLight.getMaterial().getAmbient());
+        u.spotDiffuse[i].set(gl, currentLight.getMaterial().getDiffuse());
+        u.spotSpecular[i].set(gl, currentLight.getMaterial().getSpecular());
 
         // Set the point light attributes
-        shader.setVec3(gl, String.format("SpotLights[%s].direction", i), currentLight.getDirection());
-        shader.setFloat(gl, String.format("SpotLights[%s].cutOff", i), currentLight.getCutoff());
-        shader.setFloat(gl, String.format("SpotLights[%s].outerCutOff", i), currentLight.getOuterCutoff());
+        u.spotDirection[i].set(gl, currentLight.getDirection());
+        u.spotCutOff[i].set(gl, currentLight.getCutoff());
+        u.spotOuterCutOff[i].set(gl, currentLight.getOuterCutoff());
 
         Vec3 equation = currentLight.getEquation();
-        shader.setFloat(gl, String.format("SpotLights[%s].quadratic", i), equation.x);
-        shader.setFloat(gl, String.format("SpotLights[%s].linear", i), equation.y);
-        shader.setFloat(gl, String.format("SpotLights[%s].constant", i), equation.z);
+        u.spotQuadratic[i].set(gl, equation.x);
+        u.spotLinear[i].set(gl, equation.y);
+        u.spotConstant[i].set(gl, equation.z);
 
       }
     }
 
 
-    shader.setVec3(gl, "material.ambient", material.getAmbient());
-    shader.setVec3(gl, "material.diffuse", material.getDiffuse());
-    shader.setVec3(gl, "material.specular", material.getSpecular());
-    shader.setFloat(gl, "material.shininess", material.getShininess());
+    u.materialAmbient.set(gl, material.getAmbient());
+    u.materialDiffuse.set(gl, material.getDiffuse());
+    u.materialSpecular.set(gl, material.getSpecular());
+    u.materialShininess.set(gl, material.getShininess());
 
     if (textureId1!=null) {
-      shader.setInt(gl, "first_texture", 0);  // be careful to match these with GL_TEXTURE0 and GL_TEXTURE1
-      gl.glActiveTexture(GL.GL_TEXTURE0);
-      textureId1.bind(gl);  // uses JOGL Texture class
+      u.firstTexture.set(gl, 0);  // be careful to match these with GL_TEXTURE0 and GL_TEXTURE1
+      if (bindTextures) {
+        GLState.get(gl).bindTexture(gl, 0, textureId1);  // uses JOGL Texture class
+      }
     }
     if (textureId2!=null) {
-      shader.setInt(gl, "second_texture", 1);
-      gl.glActiveTexture(GL.GL_TEXTURE1);
-      textureId2.bind(gl);  // uses JOGL Texture class
+      u.secondTexture.set(gl, 1);
+      if (bindTextures) {
+        GLState.get(gl).bindTexture(gl, 1, textureId2);  // uses JOGL Texture class
+      }
     }
-    mesh.render(gl);
   }
 
   public void render(GL3 gl) {
@@ -149,9 +302,17 @@ public class Model {
   }
 
   public void dispose(GL3 gl) {
-    mesh.dispose(gl);
-    if (textureId1!=null) textureId1.destroy(gl);
-    if (textureId2!=null) textureId2.destroy(gl);
+    // meshes from MeshLibrary are shared with other models, and freed by MeshLibrary.dispose
+    if (!mesh.isShared()) {
+      mesh.dispose(gl);
+    }
+    if (textureId1!=null) destroy(gl, textureId1);
+    if (textureId2!=null) destroy(gl, textureId2);
+  }
+
+  private static void destroy(GL3 gl, Texture texture) {
+    GLState.get(gl).textureDeleted(texture.getTextureObject());
+    texture.destroy(gl);
   }
 
 }
\ No newline at end of file
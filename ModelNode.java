@@ -1,14 +1,34 @@
+import gmaths.*;
 import com.jogamp.opengl.*;
 
 public class ModelNode extends SGNode {
 
   protected Model model;
+  protected Vec3 modelCentre = new Vec3();  // world-space bounds of the model alone
+  protected float modelRadius;
+  private int boundsVersion;  // counts updateBounds calls, so a BVH can tell which nodes moved
 
   public ModelNode(String name, Model m) {
     super(name);
     model = m; 
   }
 
+  /**
+   * @return A number that changes whenever the node's world bounds are recomputed
+   */
+  public int getBoundsVersion() {
+    return boundsVersion;
+  }
+
+  protected void updateBounds() {
+    boundsVersion++;
+    Mesh mesh = model.getMesh();
+    worldTransform.transformPoint(mesh.getBoundsCentre(), modelCentre);
+    modelRadius = mesh.getBoundsRadius()*worldTransform.getMaxScale();
+    super.updateBounds();
+    includeBounds(modelCentre, modelRadius);
+  }
+
   public void draw(GL3 gl) {
     model.render(gl, worldTransform);
     for (int i=0; i<children.size(); i++) {
@@ -16,4 +36,22 @@ public class ModelNode extends SGNode {
     }
   }
 
+  public int collect(RenderQueue queue, Frustum frustum) {
+    if (!frustum.intersectsSphere(boundsCentre, boundsRadius)) {
+      return subtreeSize();
+    }
+    int culled = 0;
+    if (frustum.intersectsSphere(modelCentre, modelRadius)) {
+      queue.add(this, model, modelCentre);
+    }
+    else {
+      culled++;
+    }
+    return culled + collectChildren(queue, frustum);
+  }
+
+  protected void render(GL3 gl, boolean bindShader, boolean bindTextures) {
+    model.render(gl, worldTransform, bindShader, bindTextures);
+  }
+
 }
\ No newline at end of file
@@ -0,0 +1,139 @@
+import gmaths.*;
+import com.jogamp.opengl.*;
+
+/**
+ * A quad, e.g. a window, that is the only way to see some part of the scene. Each frame
+ * update() finds the rectangle of the screen it covers, which can be used as a scissor
+ * for drawing what is behind it, or reports that it is off-screen.
+ * <p>
+ * testOcclusion() draws the quad invisibly inside an occlusion query to find out whether
+ * any of it is still visible once everything in front of it has been drawn. The result
+ * is only read once the GPU has it, usually a frame later, so waiting for it never stalls;
+ * it means what is behind the portal can appear a frame late after the portal is uncovered.
+ */
+public class Portal {
+
+  private ModelNode quad;      // drawn with a TwoTriangles mesh
+  private Shader shader;       // position only
+  private Uniform.Mat4 modelUniform;
+  private int[] query = new int[1];
+  private boolean queryPending, occluded;
+  private int[] scissor = new int[4];
+  private Vec3 corner = new Vec3();
+  private int[] result = new int[1];
+
+  public Portal(GL3 gl, ModelNode quad) {
+    this.quad = quad;
+    shader = new Shader(gl, "shaders/light_vs.glsl", "shaders/light_fs.glsl");
+    modelUniform = shader.getMat4("model");
+    gl.glGenQueries(1, query, 0);
+  }
+
+  /**
+   * Works out the screen rectangle the quad covers.
+   *
+   * @param viewport The viewport's x, y, width and height
+   * @return false if the quad is off-screen
+   */
+  public boolean update(Frustum frustum, Mat4 viewProjection, int[] viewport) {
+    if (!frustum.intersectsSphere(quad.modelCentre, quad.modelRadius)) {
+      occluded = false;   // the last result is stale by the time it comes back on screen
+      return false;
+    }
+    float minX = 1, minY = 1, maxX = -1, maxY = -1;
+    int behind = 0;
+    for (int i=0; i<4; i++) {
+      quad.worldTransform.transformPoint(corner.set(i < 2 ? -0.5f : 0.5f, 0, i%2 == 0 ? -0.5f : 0.5f), corner);
+      float w = row(viewProjection, 3);
+      if (w <= 1e-4f) {
+        behind++;
+        continue;
+      }
+      float x = row(viewProjection, 0)/w, y = row(viewProjection, 1)/w;
+      minX = Math.min(minX, x);
+      minY = Math.min(minY, y);
+      maxX = Math.max(maxX, x);
+      maxY = Math.max(maxY, y);
+    }
+    if (behind == 4) {
+      occluded = false;
+      return false;
+    }
+    if (behind > 0) {
+      // the quad crosses the plane of the camera, where the projection can't be trusted
+      minX = minY = -1;
+      maxX = maxY = 1;
+    }
+    minX = Math.max(minX, -1);
+    minY = Math.max(minY, -1);
+    maxX = Math.min(maxX, 1);
+    maxY = Math.min(maxY, 1);
+    if (minX >= maxX || minY >= maxY) {
+      occluded = false;
+      return false;
+    }
+    int x0 = (int)Math.floor(viewport[0] + (minX+1)*0.5f*viewport[2]);
+    int y0 = (int)Math.floor(viewport[1] + (minY+1)*0.5f*viewport[3]);
+    int x1 = (int)Math.ceil(viewport[0] + (maxX+1)*0.5f*viewport[2]);
+    int y1 = (int)Math.ceil(viewport[1] + (maxY+1)*0.5f*viewport[3]);
+    scissor[0] = x0;
+    scissor[1] = y0;
+    scissor[2] = x1-x0;
+    scissor[3] = y1-y0;
+    return true;
+  }
+
+  // row r of viewProjection times the corner as (x,y,z,1)
+  private float row(Mat4 m, int r) {
+    return m.get(r, 0)*corner.x + m.get(r, 1)*corner.y + m.get(r, 2)*corner.z + m.get(r, 3);
+  }
+
+  /**
+   * @return The x, y, width and height found by the last update()
+   */
+  public int[] getScissor() {
+    return scissor;
+  }
+
+  /**
+   * @return true if the last occlusion query to finish found the quad completely covered
+   */
+  public boolean isOccluded() {
+    return occluded;
+  }
+
+  /**
+   * Picks up the result of the query in flight if it is ready, and starts a new one if
+   * none is in flight. Call after drawing everything that can be in front of the quad,
+   * and before drawing anything behind it. The camera comes from the CameraBuffer.
+   */
+  public void testOcclusion(GL3 gl) {
+    if (queryPending) {
+      gl.glGetQueryObjectuiv(query[0], GL2ES3.GL_QUERY_RESULT_AVAILABLE, result, 0);
+      if (result[0] == 0) {
+        return;
+      }
+      gl.glGetQueryObjectuiv(query[0], GL2ES3.GL_QUERY_RESULT, result, 0);
+      occluded = result[0] == 0;
+      queryPending = false;
+    }
+    gl.glColorMask(false, false, false, false);
+    gl.glDepthMask(false);
+    gl.glBeginQuery(GL2ES3.GL_ANY_SAMPLES_PASSED, query[0]);
+    Scratch scratch = Scratch.get();
+    scratch.push();
+    shader.use(gl);
+    modelUniform.set(gl, quad.worldTransform.toFloatArrayForGLSL(scratch.mat4Array()));
+    scratch.pop();
+    quad.model.getMesh().render(gl);
+    gl.glEndQuery(GL2ES3.GL_ANY_SAMPLES_PASSED);
+    gl.glDepthMask(true);
+    gl.glColorMask(true, true, true, true);
+    queryPending = true;
+  }
+
+  public void dispose(GL3 gl) {
+    gl.glDeleteQueries(1, query, 0);
+  }
+
+}
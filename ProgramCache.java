@@ -0,0 +1,216 @@
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import com.jogamp.opengl.*;
+import com.jogamp.opengl.util.glsl.*;
+
+/**
+ * Links shader programs, each at most once. A program is keyed by a hash of its
+ * preprocessed sources, which include its defines, and of the driver's vendor, renderer
+ * and version strings, so an update to either makes a new key.
+ * <p>
+ * A program already linked in this context is reused. Otherwise, if the driver supports
+ * program binaries, the binary saved by an earlier run is loaded from DIRECTORY; if there is
+ * none, or the driver rejects it, the sources are compiled and the new binary is saved.
+ * Delete DIRECTORY to start cold. There is one cache per GL context, from get(gl).
+ */
+public class ProgramCache {
+
+  public static final String DIRECTORY = "shadercache";
+
+  private static final Map<Object, ProgramCache> caches = new WeakHashMap<Object, ProgramCache>();
+  private static volatile ProgramCache last;   // the last one looked up, as in GLState
+
+  private final WeakReference<Object> context;   // weak, or the map's entry would keep its own key alive
+  private String driver;
+  private boolean binaries;   // the driver can hand out program binaries and take them back
+  private HashMap<String, Integer> programs = new HashMap<String, Integer>();
+  private int compiled, loaded, reused;
+
+  private ProgramCache(Object context, GL3 gl) {
+    this.context = new WeakReference<Object>(context);
+    driver = gl.glGetString(GL.GL_VENDOR)+"\n"+gl.glGetString(GL.GL_RENDERER)+"\n"+gl.glGetString(GL.GL_VERSION)
+        +"\n"+gl.glGetString(GL2ES2.GL_SHADING_LANGUAGE_VERSION);
+    if (gl.isFunctionAvailable("glGetProgramBinary") && gl.isFunctionAvailable("glProgramBinary")) {
+      int[] formats = new int[1];
+      gl.glGetIntegerv(GL2ES3.GL_NUM_PROGRAM_BINARY_FORMATS, formats, 0);
+      binaries = formats[0] > 0;
+    }
+  }
+
+  /**
+   * @return The cache of gl's context, created the first time it is asked for
+   */
+  public static ProgramCache get(GL3 gl) {
+    Object context = gl.getContext();
+    if (context == null) {
+      context = gl;
+    }
+    ProgramCache cache = last;
+    if (cache != null && cache.context.get() == context) {
+      return cache;
+    }
+    synchronized (caches) {
+      cache = caches.get(context);
+      if (cache == null) {
+        cache = new ProgramCache(context, gl);
+        caches.put(context, cache);
+      }
+    }
+    last = cache;
+    return cache;
+  }
+
+  /**
+   * @param name What to call the program in error messages, e.g. its file names
+   * @return The id of a linked program made from the sources
+   */
+  public int getProgram(GL3 gl, String vertexSource, String fragmentSource, String name) {
+    String key = key(vertexSource, fragmentSource);
+    Integer program = programs.get(key);
+    if (program != null) {
+      reused++;
+      return program;
+    }
+    int id = binaries ? load(gl, key) : 0;
+    if (id != 0) {
+      loaded++;
+    }
+    else {
+      id = compile(gl, vertexSource, fragmentSource, name, key);
+      compiled++;
+    }
+    programs.put(key, id);
+    return id;
+  }
+
+  public int getCompiled() {
+    return compiled;
+  }
+
+  public int getLoaded() {
+    return loaded;
+  }
+
+  public int getReused() {
+    return reused;
+  }
+
+  public String toString() {
+    return "programs: "+compiled+" compiled, "+loaded+" loaded from "+DIRECTORY+", "+reused+" reused"
+        +(binaries ? "" : " (no program binaries)");
+  }
+
+  private String key(String vertexSource, String fragmentSource) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      for (String s : new String[]{driver, vertexSource, fragmentSource}) {
+        digest.update(s.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte)0);
+      }
+      StringBuilder hex = new StringBuilder();
+      for (byte b : digest.digest()) {
+        hex.append(String.format("%02x", b));
+      }
+      return hex.toString();
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);   // every JVM has SHA-1
+    }
+  }
+
+  private Path path(String key) {
+    return Paths.get(DIRECTORY, key+".bin");
+  }
+
+  // A saved binary is its format then its bytes. Returns 0 if there is none or the driver won't take it.
+  private int load(GL3 gl, String key) {
+    Path path = path(key);
+    if (!Files.exists(path)) {
+      return 0;
+    }
+    byte[] bytes;
+    try {
+      bytes = Files.readAllBytes(path);
+    }
+    catch (IOException e) {
+      return 0;
+    }
+    if (bytes.length <= 4) {
+      return 0;
+    }
+    ByteBuffer binary = ByteBuffer.allocateDirect(bytes.length-4);
+    binary.put(bytes, 4, bytes.length-4).flip();
+    int format = ByteBuffer.wrap(bytes).getInt();
+    int id = gl.glCreateProgram();
+    gl.glProgramBinary(id, format, binary, binary.remaining());
+    int[] status = new int[1];
+    gl.glGetProgramiv(id, GL2ES2.GL_LINK_STATUS, status, 0);
+    if (status[0] == GL.GL_TRUE) {
+      return id;
+    }
+    // usually a driver update that kept the version string; compile it again and overwrite it
+    gl.glDeleteProgram(id);
+    return 0;
+  }
+
+  private int compile(GL3 gl, String vertexSource, String fragmentSource, String name, String key) {
+    String[][] sources = new String[1][1];
+    sources[0] = new String[]{ vertexSource };
+    ShaderCode vertexShaderCode = new ShaderCode(GL3.GL_VERTEX_SHADER, sources.length, sources);
+    boolean compiled = vertexShaderCode.compile(gl, System.err);
+    if (!compiled)
+      System.err.println("[error] Unable to compile vertex shader: " + name);
+    sources[0] = new String[]{ fragmentSource };
+    ShaderCode fragmentShaderCode = new ShaderCode(GL3.GL_FRAGMENT_SHADER, sources.length, sources);
+    compiled = fragmentShaderCode.compile(gl, System.err);
+    if (!compiled)
+      System.err.println("[error] Unable to compile fragment shader: " + name);
+    ShaderProgram program = new ShaderProgram();
+    program.init(gl);
+    program.add(vertexShaderCode);
+    program.add(fragmentShaderCode);
+    if (binaries) {
+      gl.glProgramParameteri(program.program(), GL2ES3.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL.GL_TRUE);
+    }
+    if (program.link(gl, System.out) && binaries) {
+      save(gl, program.program(), key);
+    }
+    return program.program();
+  }
+
+  private void save(GL3 gl, int id, String key) {
+    int[] length = new int[1], format = new int[1];
+    gl.glGetProgramiv(id, GL2ES3.GL_PROGRAM_BINARY_LENGTH, length, 0);
+    if (length[0] <= 0) {
+      return;
+    }
+    ByteBuffer binary = ByteBuffer.allocateDirect(length[0]);
+    gl.glGetProgramBinary(id, length[0], length, 0, format, 0, binary);
+    byte[] bytes = new byte[4+length[0]];
+    ByteBuffer.wrap(bytes).putInt(format[0]);
+    binary.get(bytes, 4, length[0]);   // length is now what was written
+    // written to the side and moved into place, so a run that dies half way leaves no partial binary
+    try {
+      Path path = path(key);
+      Files.createDirectories(path.getParent());
+      Path temporary = Files.createTempFile(path.getParent(), key, ".tmp");
+      Files.write(temporary, bytes);
+      Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+    catch (IOException e) {
+      System.err.println("[warning] Unable to save program binary for "+key+": "+e);
+    }
+  }
+
+}
@@ -0,0 +1,49 @@
+import gmaths.*;
+
+/**
+ * What a raycast hit: the node, how far along the ray, and where.
+ */
+public class RaycastHit {
+
+  private final ModelNode node;
+  private final float distance;
+  private final int triangle;
+  private final Vec3 point;
+
+  public RaycastHit(ModelNode node, float distance, int triangle, Vec3 point) {
+    this.node = node;
+    this.distance = distance;
+    this.triangle = triangle;
+    this.point = point;
+  }
+
+  public ModelNode getNode() {
+    return node;
+  }
+
+  /**
+   * @return The distance from the ray's origin, in world units
+   */
+  public float getDistance() {
+    return distance;
+  }
+
+  /**
+   * @return The index of the triangle hit in the node's mesh, or -1 if only its bounding box was tested
+   */
+  public int getTriangle() {
+    return triangle;
+  }
+
+  /**
+   * @return The world-space point hit
+   */
+  public Vec3 getPoint() {
+    return point;
+  }
+
+  public String toString() {
+    return node.getPath()+" at "+distance+", triangle "+triangle;
+  }
+
+}
@@ -0,0 +1,260 @@
+import gmaths.*;
+import java.util.Arrays;
+import com.jogamp.opengl.*;
+import com.jogamp.opengl.util.texture.*;
+
+/**
+ * Collects the draws for a frame from the scene graph, sorts them to cut down
+ * on GL state changes, then submits them. Each draw gets a 64-bit key, which is
+ * sorted as a plain long:
+ * <pre>
+ *   bit 63     unused, so keys stay positive
+ *   bit 62     alpha tested, so those shaders draw after the opaque ones
+ *   bits 54-61 shader program
+ *   bits 42-53 textures
+ *   bits 32-41 mesh (vertex array)
+ *   bits 24-31 model, so draws of the same Model end up next to each other
+ *   bits 16-23 distance from the camera, so opaque draws go front to back
+ *   bits 0-15  index of the draw in the queue
+ * </pre>
+ * The ids are truncated to fit, so two ids can share a key; that only makes the order
+ * slightly worse. Whether a bind can be skipped is decided on the full ids.
+ * <p>
+ * When sorting leaves several draws of the same Model in a row, and its shader has an
+ * instanced variant, they are submitted as one instanced draw.
+ *
+ * Usage per frame: begin(), collect the scene graphs, sort(), submit().
+ */
+public class RenderQueue {
+
+  public static final int MAX_DRAWS = 1 << 16;
+  private static final float MAX_DEPTH = 100;   // the far plane of Mat4Transform.perspective
+
+  private SGNode[] nodes = new SGNode[64];
+  private Model[] models = new Model[64];
+  private int[] programs = new int[64];
+  private int[] textures1 = new int[64];
+  private int[] textures2 = new int[64];
+  private long[] keys = new long[64];
+  private int count;
+  private Vec3 eye = new Vec3();
+  private float projectionScale = 1;
+  private float[] instanceMatrices = new float[16*16];
+
+  private int programSwitchesUnsorted, textureBindsUnsorted, drawCallsUnsorted;
+  private int programSwitchesSorted, textureBindsSorted, drawCallsSorted;
+
+  /**
+   * Empties the queue for a new frame, assuming a 90 degree field of view.
+   *
+   * @param eye The camera position, for the depth part of the key
+   */
+  public void begin(Vec3 eye) {
+    begin(eye, 1);
+  }
+
+  /**
+   * Empties the queue for a new frame.
+   *
+   * @param eye The camera position, for the depth part of the key
+   * @param projectionScale Element (1,1) of the projection matrix, 1/tan(fovy/2), for getScreenSize
+   */
+  public void begin(Vec3 eye, float projectionScale) {
+    this.projectionScale = projectionScale;
+    for (int i=0; i<count; ++i) {
+      nodes[i] = null;
+      models[i] = null;
+    }
+    count = 0;
+    this.eye.set(eye);
+  }
+
+  /**
+   * @return The fraction of the viewport's height covered by a sphere, 1 if the camera is inside it
+   */
+  public float getScreenSize(Vec3 centre, float radius) {
+    float dx = centre.x-eye.x, dy = centre.y-eye.y, dz = centre.z-eye.z;
+    float d = (float)Math.sqrt(dx*dx + dy*dy + dz*dz);
+    return d <= radius ? 1 : Math.min(radius*projectionScale/d, 1);
+  }
+
+  /**
+   * Queues a draw of a model at node's worldTransform. submit() will either call
+   * node.render(gl, bindShader, bindTextures) or draw it as part of an instanced batch.
+   *
+   * @param node The node to draw
+   * @param model The model it draws
+   * @param centre The world-space centre of what is drawn, for depth sorting
+   */
+  public void add(SGNode node, Model model, Vec3 centre) {
+    add(node, model, model.getShader(), model.getTexture1(), model.getTexture2(),
+        model.getMesh().getVertexArrayId(), model.getId(), centre);
+  }
+
+  /**
+   * Queues an untextured draw. submit() will call node.render(gl, bindShader, bindTextures).
+   *
+   * @param node The node to draw
+   * @param shader The shader it draws with
+   * @param mesh The vertex array it draws
+   * @param centre The world-space centre of what is drawn, for depth sorting
+   */
+  public void add(SGNode node, Shader shader, int mesh, Vec3 centre) {
+    add(node, null, shader, null, null, mesh, 0, centre);
+  }
+
+  private void add(SGNode node, Model model, Shader shader, Texture texture1, Texture texture2, int mesh,
+                   int modelId, Vec3 centre) {
+    if (count == MAX_DRAWS) {
+      throw new IllegalStateException("RenderQueue is full");
+    }
+    if (count == nodes.length) {
+      int n = count*2;
+      nodes = Arrays.copyOf(nodes, n);
+      models = Arrays.copyOf(models, n);
+      programs = Arrays.copyOf(programs, n);
+      textures1 = Arrays.copyOf(textures1, n);
+      textures2 = Arrays.copyOf(textures2, n);
+      keys = Arrays.copyOf(keys, n);
+    }
+    int program = shader.getID();
+    int t1 = texture1 == null ? 0 : texture1.getTextureObject();
+    int t2 = texture2 == null ? 0 : texture2.getTextureObject();
+    float dx = centre.x-eye.x, dy = centre.y-eye.y, dz = centre.z-eye.z;
+    float depth = Math.min((float)Math.sqrt(dx*dx + dy*dy + dz*dz)/MAX_DEPTH, 1);
+
+    nodes[count] = node;
+    models[count] = model;
+    programs[count] = program;
+    textures1[count] = t1;
+    textures2[count] = t2;
+    keys[count] = (shader.isAlphaTested() ? 1L : 0L) << 62
+                | (long)(program & 0xFF) << 54
+                | (long)((t1 & 0x3F) << 6 | (t2 & 0x3F)) << 42
+                | (long)(mesh & 0x3FF) << 32
+                | (long)(modelId & 0xFF) << 24
+                | (long)(depth*0xFF) << 16
+                | count;
+    count++;
+  }
+
+  /**
+   * Sorts the queued draws, and counts the program switches and texture binds
+   * needed in tree order and in sorted order.
+   */
+  public void sort() {
+    // tree order first, while the keys are still in it
+    run(null, false);
+    programSwitchesUnsorted = programSwitches;
+    textureBindsUnsorted = textureBinds;
+    drawCallsUnsorted = drawCalls;
+    Arrays.sort(keys, 0, count);
+    run(null, true);
+    programSwitchesSorted = programSwitches;
+    textureBindsSorted = textureBinds;
+    drawCallsSorted = drawCalls;
+  }
+
+  /**
+   * Draws everything in key order, batching repeated models into instanced draws
+   * and skipping program and texture binds that would repeat what is already bound.
+   */
+  public void submit(GL3 gl) {
+    run(gl, true);
+  }
+
+  private int programSwitches, textureBinds, drawCalls;
+
+  // Walks the draws tracking what is bound, drawing them if gl is not null.
+  // Only the sorted order is batched, so the unsorted counts show the old one draw per node.
+  private void run(GL3 gl, boolean sorted) {
+    int program = -1, texture1 = -1, texture2 = -1;
+    programSwitches = 0;
+    textureBinds = 0;
+    drawCalls = 0;
+    for (int i=0; i<count; ++i) {
+      int item = sorted ? (int)(keys[i] & 0xFFFF) : i;
+      int instances = sorted ? instanceRun(i) : 1;
+      int itemProgram = instances > 1 ? models[item].getInstancedShader().getID() : programs[item];
+      boolean bindShader = itemProgram != program;
+      // texture units are shared between programs, and untextured draws leave them alone
+      boolean textured = textures1[item] != 0 || textures2[item] != 0;
+      boolean bindTextures = textured && (textures1[item] != texture1 || textures2[item] != texture2);
+      if (bindShader) {
+        program = itemProgram;
+        programSwitches++;
+      }
+      if (bindTextures) {
+        texture1 = textures1[item];
+        texture2 = textures2[item];
+        textureBinds++;
+      }
+      drawCalls++;
+      if (gl != null && instances > 1) {
+        renderInstanced(gl, i, instances, bindShader, bindTextures);
+      }
+      else if (gl != null) {
+        nodes[item].render(gl, bindShader, bindTextures);
+      }
+      i += instances-1;
+    }
+  }
+
+  // The number of sorted draws from i on that can go in one instanced draw with it
+  private int instanceRun(int i) {
+    Model model = models[(int)(keys[i] & 0xFFFF)];
+    if (model == null || model.getInstancedShader() == null) {
+      return 1;
+    }
+    int n = 1;
+    while (i+n < count && models[(int)(keys[i+n] & 0xFFFF)] == model) {
+      n++;
+    }
+    return n;
+  }
+
+  private void renderInstanced(GL3 gl, int first, int instances, boolean bindShader, boolean bindTextures) {
+    if (instanceMatrices.length < instances*16) {
+      instanceMatrices = new float[instances*16*2];
+    }
+    for (int k=0; k<instances; ++k) {
+      nodes[(int)(keys[first+k] & 0xFFFF)].worldTransform.toFloatArrayForGLSL(instanceMatrices, k*16);
+    }
+    models[(int)(keys[first] & 0xFFFF)].renderInstanced(gl, instanceMatrices, instances, bindShader, bindTextures);
+  }
+
+  public int size() {
+    return count;
+  }
+
+  public int getProgramSwitchesUnsorted() {
+    return programSwitchesUnsorted;
+  }
+
+  public int getProgramSwitchesSorted() {
+    return programSwitchesSorted;
+  }
+
+  public int getTextureBindsUnsorted() {
+    return textureBindsUnsorted;
+  }
+
+  public int getTextureBindsSorted() {
+    return textureBindsSorted;
+  }
+
+  public int getDrawCallsUnsorted() {
+    return drawCallsUnsorted;
+  }
+
+  public int getDrawCallsSorted() {
+    return drawCallsSorted;
+  }
+
+  public String toString() {
+    return "draw calls "+drawCallsUnsorted+" -> "+drawCallsSorted
+        +", program switches "+programSwitchesUnsorted+" -> "+programSwitchesSorted
+        +", texture binds "+textureBindsUnsorted+" -> "+textureBindsSorted;
+  }
+
+}
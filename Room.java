@@ -19,8 +19,12 @@ public class Room {
     private Model floor, wall, window;
     public static Float wallSize = 16f;
     private SGNode roomRoot;
+    private StaticNode roomStatic;
+    private ModelNode windowShape;
+    private CompiledSceneGraph compiledRoot;
     private Table table;
     private Lamp[] lamps;
+    private SpotLight[] lampLights;
 
     private Texture[] textures;
 
@@ -36,10 +40,11 @@ public class Room {
     public Room(GL3 gl, Camera camera, Light[] worldLights ,Shader multiShader) {
 
         loadTextures(gl);
-        SpotLight[] lampLights = new SpotLight[2];
+        lampLights = new SpotLight[2];
 
-        Mesh mesh = new Mesh(gl, TwoTriangles.vertices.clone(), TwoTriangles.indices.clone());
+        Mesh mesh = MeshLibrary.get(gl, TwoTriangles.generate());
         Shader windowShader = new Shader(gl, "shaders/tt_vs.glsl", "shaders/window_fs.glsl");
+        windowShader.setAlphaTested(true);  // the window discards its transparent pixels
 
         // The floor is going to be wood, this should be pretty matte
         Material floorMaterial = new Material();
@@ -61,7 +66,7 @@ public class Room {
         lamps[0] = lamp1;
 
         // Lamp 2 (right hand side)
-        initialPosition = Mat4.multiply(Mat4Transform.translate(4,0,0), Mat4Transform.rotateAroundY(180));
+        initialPosition = Mat4Transform.compose(new Vec3(4,0,0), Quat.rotateAroundY(180), new Vec3(1));
         Lamp lamp2 = new Lamp(gl, camera, worldLights, multiShader, Lamp.Size.MEDIUM, initialPosition, getLamp2Poses());
         lampLights[1] = lamp2.getSpotLight();
         lamps[1] = lamp2;
@@ -82,13 +87,17 @@ public class Room {
         // ====================== Create the scene graph for our room =============================
 
         // Base matrix (both window's & floor need to be this size)
-        Mat4 mStart = Mat4Transform.scale(wallSize,1f,wallSize);
+        Vec3 startScale = new Vec3(wallSize,1f,wallSize);
+        Mat4 mStart = Mat4Transform.scale(startScale);
 
         roomRoot = new NameNode("Room root");
 
         // Create transform to move the room if we want
         TransformNode roomMoveTransform = new TransformNode("move room transform", new Mat4(1));
 
+        // The floor & walls never move, so they get baked into a few meshes
+        roomStatic = new StaticNode("Static room");
+
         // Create the floor node
         NameNode floorNode = new NameNode("Floor");
             TransformNode floorTransform = new TransformNode("Floor transform", mStart);
@@ -97,24 +106,22 @@ public class Room {
 
         // Create the back wall node
         NameNode windowNode = new NameNode("Window");
-            Mat4 m = Mat4.multiply(Mat4Transform.rotateAroundX(90), mStart);
-            m = Mat4.multiply(Mat4Transform.translate(0,wallSize*0.5f,-wallSize*0.5f), m);
+            // translate x rotate x scale, built in one go rather than as a chain of products
+            Mat4 m = Mat4Transform.compose(new Vec3(0,wallSize*0.5f,-wallSize*0.5f), Quat.rotateAroundX(90), startScale);
                 TransformNode windowTransform = new TransformNode("Window transform", m);
-                ModelNode windowShape = new ModelNode("Window shape", window);
+                windowShape = new ModelNode("Window shape", window);
 
         // Create the left wall node
         NameNode leftWall = new NameNode("Left wall");
-            m = Mat4.multiply(Mat4Transform.rotateAroundY(90), mStart);
-            m = Mat4.multiply(Mat4Transform.rotateAroundZ(-90), m);
-            m = Mat4.multiply(Mat4Transform.translate(-wallSize*0.5f,wallSize*0.5f,0), m);
+            Quat rotation = Quat.multiply(Quat.rotateAroundZ(-90), Quat.rotateAroundY(90));
+            m = Mat4Transform.compose(new Vec3(-wallSize*0.5f,wallSize*0.5f,0), rotation, startScale);
                 TransformNode leftWallTransform = new TransformNode("Left wall transform", m);
                 ModelNode leftWallShape = new ModelNode("left wall shape", wall);
 
         // Create the right wall node
         NameNode rightWall = new NameNode("Right wall");
-            m = Mat4.multiply(Mat4Transform.rotateAroundY(90), mStart);
-            m = Mat4.multiply(Mat4Transform.rotateAroundZ(90), m);
-            m = Mat4.multiply(Mat4Transform.translate(wallSize*0.5f,wallSize*0.5f,0), m);
+            rotation = Quat.multiply(Quat.rotateAroundZ(90), Quat.rotateAroundY(90));
+            m = Mat4Transform.compose(new Vec3(wallSize*0.5f,wallSize*0.5f,0), rotation, startScale);
                 TransformNode rightWallTransform = new TransformNode("Right wall transform", m);
                 ModelNode rightWallShape = new ModelNode("Right wall shape", wall);
 
@@ -136,55 +143,83 @@ public class Room {
                 positionLight.addChild(scaleLight);
                     scaleLight.addChild(roomLightNode);
 
-            roomMoveTransform.addChild(floorNode);
-                floorNode.addChild(floorTransform);
-                    floorTransform.addChild(floorShape);
-            roomMoveTransform.addChild(leftWall);
-                leftWall.addChild(leftWallTransform);
-                    leftWallTransform.addChild(leftWallShape);
-            roomMoveTransform.addChild(windowNode);
-                windowNode.addChild(windowTransform);
-                    windowTransform.addChild(windowShape);
-            roomMoveTransform.addChild(rightWall);
-                rightWall.addChild(rightWallTransform);
-                    rightWallTransform.addChild(rightWallShape);
-        roomRoot.update();
+            roomMoveTransform.addChild(roomStatic);
+                roomStatic.addChild(floorNode);
+                    floorNode.addChild(floorTransform);
+                        floorTransform.addChild(floorShape);
+                roomStatic.addChild(leftWall);
+                    leftWall.addChild(leftWallTransform);
+                        leftWallTransform.addChild(leftWallShape);
+                roomStatic.addChild(windowNode);
+                    windowNode.addChild(windowTransform);
+                        windowTransform.addChild(windowShape);
+                roomStatic.addChild(rightWall);
+                    rightWall.addChild(rightWallTransform);
+                        rightWallTransform.addChild(rightWallShape);
+        roomRoot.updateParallel();
+
+        // Bake the static parts now their world transforms are known
+        roomStatic.bake(gl);
+        table.bake(gl);
+        // the table and lamps are in here too; their TransformNodes bind to this graph
+        compiledRoot = new CompiledSceneGraph(roomRoot);
+    }
+
+    /**
+     * @return The node that draws the window, the only place the garden can be seen through
+     */
+    public ModelNode getWindowNode() {
+        return windowShape;
+    }
+
+    /**
+     * @return The lamps' spot lights, which light everything in the room but the lamps
+     */
+    public SpotLight[] getSpotLights() {
+        return lampLights;
+    }
+
+    public SGNode getRoot() {
+        return roomRoot;
     }
 
     private Poses getLamp2Poses() {
 
         // Look at egg
-        LampPose pose1 = new LampPose(Mat4Transform.rotateAroundZ(30), Mat4Transform.rotateAroundZ(-65),
-                LampPose.noTransform);
+        LampPose pose1 = new LampPose(Quat.rotateAroundZ(30), Quat.rotateAroundZ(-65),
+                LampPose.noRotation);
 
         // Look at the ceiling
-        LampPose pose2 = new LampPose(Mat4Transform.rotateAroundY(45), Mat4Transform.rotateAroundZ(-30),
-                Mat4Transform.rotateAroundZ(75));
+        LampPose pose2 = new LampPose(Quat.rotateAroundY(45), Quat.rotateAroundZ(-30),
+                Quat.rotateAroundZ(75));
 
         // Look towards user
-        LampPose pose3 = new LampPose(LampPose.noTransform, Mat4Transform.rotateAroundY(80),
-                Mat4Transform.rotateAroundX(45));
+        LampPose pose3 = new LampPose(LampPose.noRotation, Quat.rotateAroundY(80),
+                Quat.rotateAroundX(45));
         return new Poses(pose1, pose2, pose3);
     }
 
     private Poses getLamp1Poses() {
 
         // Look at the egg close up
-        LampPose pose1 = new LampPose(LampPose.noTransform, Mat4Transform.rotateAroundZ(-30),
-                Mat4Transform.rotateAroundZ(45));
+        LampPose pose1 = new LampPose(LampPose.noRotation, Quat.rotateAroundZ(-30),
+                Quat.rotateAroundZ(45));
 
         // Look out of the window
-        LampPose pose2 = new LampPose(Mat4Transform.rotateAroundY(80), LampPose.noTransform,
-                Mat4Transform.rotateAroundX(45));
+        LampPose pose2 = new LampPose(Quat.rotateAroundY(80), LampPose.noRotation,
+                Quat.rotateAroundX(45));
 
         // Look at floor
-        LampPose pose3 = new LampPose(Mat4Transform.rotateAroundY(45), Mat4Transform.rotateAroundZ(-30),
-                Mat4Transform.rotateAroundZ(-30));
+        LampPose pose3 = new LampPose(Quat.rotateAroundY(45), Quat.rotateAroundZ(-30),
+                Quat.rotateAroundZ(-30));
 
         return new Poses(pose1, pose2, pose3);
     }
 
-    public void render(GL3 gl, double elapsedTime) {
+    /**
+     * Animate the room and update its transforms
+     */
+    public void update(double elapsedTime) {
 
         // Activate egg animation
         table.makeEggJump(elapsedTime);
@@ -194,15 +229,23 @@ public class Room {
             lamp.move(elapsedTime);
         }
 
-        // Draw the root
-        roomRoot.draw(gl);
+        // Recompute only the branches that moved
+        compiledRoot.update();
+    }
 
+    /**
+     * Queue the visible parts of the room for drawing
+     * @return the number of scene graph nodes culled by the frustum
+     */
+    public int collect(RenderQueue queue, Frustum frustum) {
+        return roomRoot.collect(queue, frustum);
     }
 
     public void dispose(GL3 gl) {
         floor.dispose(gl);
         wall.dispose(gl);
         table.dispose(gl);
+        roomStatic.dispose(gl);
 
         // Remove all the lamps
         for (Lamp lamp:lamps) {
@@ -1,31 +1,271 @@
 import gmaths.*;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import com.jogamp.opengl.*;
 
 public class SGNode {
 
+  // Subtrees smaller than this are updated on one thread by updateParallel()
+  public static final int PARALLEL_THRESHOLD = 512;
+
   protected String name;
   protected ArrayList<SGNode> children;
   protected Mat4 worldTransform;
+  protected SGNode parent;
+  protected boolean dirty;       // this subtree's world transforms are out of date
+  protected boolean childDirty;  // some node below this one is dirty
+  private int subtreeSize = -1;  // cached, -1 when out of date
+  protected Vec3 boundsCentre = new Vec3();
+  protected float boundsRadius = -1;  // world-space sphere around everything drawn in this subtree, -1 if nothing is
+  private String path;           // names from the root down, joined with '/'
+  private SceneIndex index;      // shared by the whole tree, null until getIndex() is first called on it
 
   public SGNode(String name) {
     children = new ArrayList<SGNode>();
     this.name = name;
+    path = name;
     worldTransform = new Mat4(1);
   }
 
   public void addChild(SGNode child) {
     children.add(child);
+    child.parent = this;
+    child.markDirty();
+    for (SGNode p = this; p != null; p = p.parent) {
+      p.subtreeSize = -1;
+    }
+    child.attach(path, index);
+  }
+
+  // Recomputes the paths of this subtree under a new parent and moves it into the parent's index
+  private void attach(String parentPath, SceneIndex index) {
+    path = parentPath+"/"+name;
+    this.index = index;
+    if (index != null) {
+      index.add(this);
+    }
+    for (int i=0; i<children.size(); i++) {
+      children.get(i).attach(path, index);
+    }
+  }
+
+  /**
+   * @return The names from the root down to this node, joined with '/'
+   */
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * @return The index of the scene graph this node is in. It is built on the first
+   *         call and then kept up to date by addChild.
+   */
+  public SceneIndex getIndex() {
+    if (index == null) {
+      SGNode root = this;
+      while (root.parent != null) {
+        root = root.parent;
+      }
+      root.index = new SceneIndex();
+      root.index.add(root);
+      for (int i=0; i<root.children.size(); i++) {
+        root.children.get(i).attach(root.path, root.index);
+      }
+    }
+    return index;
+  }
+
+  /**
+   * @param relativePath A path from this node, starting with the name of a child,
+   *                     e.g. "top/egg" from the table's root
+   * @return The first node at that path, or null
+   */
+  public SGNode find(String relativePath) {
+    return getIndex().find(path+"/"+relativePath);
+  }
+
+  /**
+   * @return The nodes of the given type at or below the nodes at relativePath
+   */
+  public <T extends SGNode> List<T> findAll(String relativePath, Class<T> type) {
+    return getIndex().findAll(path+"/"+relativePath, type);
+  }
+
+  /**
+   * @return The number of nodes in this subtree, including this one
+   */
+  public int subtreeSize() {
+    if (subtreeSize < 0) {
+      int size = 1;
+      for (int i=0; i<children.size(); i++) {
+        size += children.get(i).subtreeSize();
+      }
+      subtreeSize = size;
+    }
+    return subtreeSize;
+  }
+
+  /**
+   * Flags this subtree for the next updateDirty(), and marks the path
+   * from the root down to it so that pass can find it.
+   */
+  protected void markDirty() {
+    dirty = true;
+    for (SGNode p = parent; p != null && !p.childDirty; p = p.parent) {
+      p.childDirty = true;
+    }
   }
   
   public void update() {
     update(worldTransform);
   }
+
+  /**
+   * Recomputes the world transforms of the dirty subtrees below and including this node,
+   * skipping branches where nothing has changed. Call once per frame on the root, unless
+   * the tree has been compiled: then CompiledSceneGraph.update() takes its place, and
+   * compiled TransformNodes no longer mark their ancestors.
+   */
+  public void updateDirty() {
+    if (dirty) {
+      update(worldTransform);
+    }
+    else if (childDirty) {
+      childDirty = false;
+      for (int i=0; i<children.size(); i++) {
+        children.get(i).updateDirty();
+      }
+      updateBounds();
+    }
+  }
   
-  protected void update(Mat4 t) {
-    worldTransform = t;
+  /**
+   * Like update(), but subtrees of at least PARALLEL_THRESHOLD nodes are split across
+   * the common ForkJoinPool. Sibling subtrees share no state during an update, and each
+   * node goes through the same updateSelf() and updateBounds() as in update(), so the
+   * results are identical.
+   */
+  public void updateParallel() {
+    if (subtreeSize() < PARALLEL_THRESHOLD) {
+      update();
+    }
+    else {
+      ForkJoinPool.commonPool().invoke(new UpdateTask(this, worldTransform));
+    }
+  }
+
+  // Final so that updateParallel() does what update() does: nodes change how they update
+  // through updateLocal() and updateBounds(), which both paths call
+  protected final void update(Mat4 t) {
+    Mat4 childWorld = updateSelf(t);
+    for (int i=0; i<children.size(); i++) {
+      children.get(i).update(childWorld);
+    }
+    updateBounds();
+  }
+
+  // This node's part of an update, before its children
+  private Mat4 updateSelf(Mat4 t) {
+    dirty = false;
+    childDirty = false;
+    return updateLocal(t);
+  }
+
+  /**
+   * Updates this node alone.
+   *
+   * @param t The parent's world transform
+   * @return  The world transform this node's children inherit
+   */
+  protected Mat4 updateLocal(Mat4 t) {
+    worldTransform.set(t);
+    worldTransformChanged();
+    return worldTransform;
+  }
+
+  /**
+   * Called whenever worldTransform has been recomputed, for nodes that need to pass it on.
+   */
+  protected void worldTransformChanged() {
+  }
+
+  /**
+   * Recomputes the bounding sphere of this subtree from the children's spheres,
+   * which must already be up to date. Nodes that draw something add their own.
+   */
+  protected void updateBounds() {
+    boundsRadius = -1;
     for (int i=0; i<children.size(); i++) {
-      children.get(i).update(t);
+      SGNode child = children.get(i);
+      includeBounds(child.boundsCentre, child.boundsRadius);
+    }
+  }
+
+  /**
+   * Grows the bounding sphere to enclose another sphere.
+   */
+  protected void includeBounds(Vec3 centre, float radius) {
+    if (radius < 0) {
+      return;
+    }
+    if (boundsRadius < 0) {
+      boundsCentre.set(centre);
+      boundsRadius = radius;
+      return;
+    }
+    float dx = centre.x-boundsCentre.x, dy = centre.y-boundsCentre.y, dz = centre.z-boundsCentre.z;
+    float d = (float)Math.sqrt(dx*dx + dy*dy + dz*dz);
+    if (d+radius <= boundsRadius) {
+      return;
+    }
+    if (d+boundsRadius <= radius) {
+      boundsCentre.set(centre);
+      boundsRadius = radius;
+      return;
+    }
+    float r = (d+boundsRadius+radius)*0.5f;
+    float s = (r-boundsRadius)/d;
+    boundsCentre.set(boundsCentre.x+dx*s, boundsCentre.y+dy*s, boundsCentre.z+dz*s);
+    boundsRadius = r;
+  }
+
+  private static final class UpdateTask extends RecursiveAction {
+    private final SGNode node;
+    private final Mat4 t;
+
+    UpdateTask(SGNode node, Mat4 t) {
+      this.node = node;
+      this.t = t;
+    }
+
+    protected void compute() {
+      if (node.subtreeSize() < PARALLEL_THRESHOLD) {
+        node.update(t);
+        return;
+      }
+      Mat4 childWorld = node.updateSelf(t);
+      // hand the large subtrees to other workers, then do the small ones here
+      ArrayList<UpdateTask> forks = new ArrayList<UpdateTask>();
+      for (int i=0; i<node.children.size(); i++) {
+        SGNode child = node.children.get(i);
+        if (child.subtreeSize() >= PARALLEL_THRESHOLD) {
+          UpdateTask task = new UpdateTask(child, childWorld);
+          task.fork();
+          forks.add(task);
+        }
+      }
+      for (int i=0; i<node.children.size(); i++) {
+        SGNode child = node.children.get(i);
+        if (child.subtreeSize() < PARALLEL_THRESHOLD) {
+          child.update(childWorld);
+        }
+      }
+      for (int i=0; i<forks.size(); i++) {
+        forks.get(i).join();
+      }
+      node.updateBounds();
     }
   }
 
@@ -54,4 +294,37 @@ public class SGNode {
     }
   }
 
+  /**
+   * Adds the draws for the parts of this subtree whose bounds are inside the frustum
+   * to a render queue, skipping whole subtrees that are outside it.
+   *
+   * @return  The number of nodes culled
+   */
+  public int collect(RenderQueue queue, Frustum frustum) {
+    if (boundsRadius < 0) {
+      return 0;
+    }
+    if (!frustum.intersectsSphere(boundsCentre, boundsRadius)) {
+      return subtreeSize();
+    }
+    return collectChildren(queue, frustum);
+  }
+
+  protected int collectChildren(RenderQueue queue, Frustum frustum) {
+    int culled = 0;
+    for (int i=0; i<children.size(); i++) {
+      culled += children.get(i).collect(queue, frustum);
+    }
+    return culled;
+  }
+
+  /**
+   * Draws this node alone, for a RenderQueue.
+   *
+   * @param bindShader false if this node's shader is already in use
+   * @param bindTextures false if this node's textures are already bound
+   */
+  protected void render(GL3 gl, boolean bindShader, boolean bindTextures) {
+  }
+
 }
\ No newline at end of file
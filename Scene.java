@@ -23,12 +23,25 @@ public class Scene {
 	private Garden garden;
 	private Shader multiShader;
 	private double startTime;
+	private Camera camera;
+	private Frustum frustum = new Frustum();
+	private CameraBuffer cameraBuffer;
+	private int culledNodes;
+	private RenderQueue renderQueue = new RenderQueue();
+	private RenderQueue gardenQueue = new RenderQueue();
+	private Portal window;
+	private int[] viewport = new int[4];
+	private boolean gardenDrawn;
+	private BVH bvh;
+	private LightingBuffer lighting;
+	private GLState glState;
 
 
 	public Scene(GL3 gl, Camera camera) {
 
 		// Time
 		startTime = getSeconds();
+		this.camera = camera;
 
 		// Create the lights for our scene (sun should be slightly yellow)
 		Vec3 whiteLight = new Vec3(1,1,1);
@@ -59,9 +72,19 @@ public class Scene {
 		// Create the room for the scene (this should be illuminated by the room and the sun
 		room = new Room(gl,camera, worldLights, multiShader);
 
+		// The room's shaders read the lights from a uniform buffer, filled once a frame
+		lighting = new LightingBuffer(gl);
+		cameraBuffer = new CameraBuffer(gl);
+		glState = GLState.get(gl);
+
 		// Create the garden (the garden should not be illuminated by the room light)
 		garden = new Garden(gl, camera, sun);
 
+		// The garden is only ever seen through the room's window
+		window = new Portal(gl, room.getWindowNode());
+
+		// For picking things in the room with a ray
+		bvh = new BVH(room.getRoot());
 
 	}
 
@@ -72,15 +95,119 @@ public class Scene {
 
 	public void render(GL3 gl) {
 		double elapsedTime = startTime - getSeconds();
-		room.render(gl, elapsedTime);
-		garden.render(gl, elapsedTime);
+		glState.beginFrame();
+
+		// Animate and update the transforms
+		room.update(elapsedTime);
+		garden.update(gl, elapsedTime);
+		lighting.update(gl, worldLights, room.getSpotLights());
+
+		// The camera for the whole frame, only uploaded
+		// and re-culled against when it has moved
+		CameraSnapshot view = camera.getSnapshot();
+		if (cameraBuffer.update(gl, view)) {
+			frustum.set(view.getViewProjection());
+		}
+
+		// Collect what the camera can see
+		renderQueue.begin(view.getPosition(), view.getProjection().get(1, 1));
+		culledNodes = room.collect(renderQueue, frustum);
+
+		// Draw it in an order that changes the GL state as little as possible
+		renderQueue.sort();
+		renderQueue.submit(gl);
+
+		// Draw the garden clipped to the window, unless the window is off-screen
+		// or something in the room completely covers it
+		boolean windowOnScreen = window.update(frustum, view.getViewProjection(), viewport);
+		if (windowOnScreen) {
+			window.testOcclusion(gl);
+		}
+		gardenDrawn = windowOnScreen && !window.isOccluded();
+		if (gardenDrawn) {
+			int[] scissor = window.getScissor();
+			gardenQueue.begin(view.getPosition(), view.getProjection().get(1, 1));
+			culledNodes += garden.collect(gardenQueue, frustum);
+			gardenQueue.sort();
+			glState.enable(gl, GL.GL_SCISSOR_TEST);
+			gl.glScissor(scissor[0], scissor[1], scissor[2], scissor[3]);
+			gardenQueue.submit(gl);
+			glState.disable(gl, GL.GL_SCISSOR_TEST);
+		}
+
+	}
+
+	/**
+	 * Finds the nearest thing in the room along a ray,
+	 * as it was after the last frame's animation
+	 * @param origin the start of the ray in world space
+	 * @param dir the direction of the ray
+	 * @return the node, distance and triangle hit, or null
+	 */
+	public RaycastHit raycast(Vec3 origin, Vec3 dir) {
+		bvh.refit();
+		return bvh.raycast(origin, dir);
+	}
+
+	/**
+	 * Called when the window is resized, so the
+	 * garden's scissor rectangle can be worked out
+	 */
+	public void setViewport(int x, int y, int width, int height) {
+		viewport[0] = x;
+		viewport[1] = y;
+		viewport[2] = width;
+		viewport[3] = height;
+	}
+
+	/**
+	 * @return true if the garden was drawn in the last frame,
+	 * false if the window was off-screen or covered
+	 */
+	public boolean isGardenDrawn() {
+		return gardenDrawn;
+	}
+
+	/**
+	 * @return the number of scene graph nodes
+	 * skipped by frustum culling in the last frame
+	 */
+	public int getCulledNodeCount() {
+		return culledNodes;
+	}
+
+	/**
+	 * @return the render queue, which reports how many
+	 * program switches and texture binds sorting saved
+	 */
+	public RenderQueue getRenderQueue() {
+		return renderQueue;
+	}
+
+	/**
+	 * @return the GL state tracker, which reports how many
+	 * redundant GL calls it dropped in the last frame
+	 */
+	public GLState getGLState() {
+		return glState;
+	}
 
+	/**
+	 * @return the render queue for the garden, only
+	 * filled in frames where it is drawn
+	 */
+	public RenderQueue getGardenQueue() {
+		return gardenQueue;
 	}
 
 	public void dispose(GL3 gl) {
 
 		room.dispose(gl);
 		garden.dispose(gl);
+		window.dispose(gl);
+		lighting.dispose(gl);
+		cameraBuffer.dispose(gl);
+		MeshLibrary.dispose(gl);
 	}
 
 	public void toggleLight(int index)
@@ -0,0 +1,329 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A scene description with no GL objects in it: the meshes, textures, shaders, materials,
+ * models and poses a scene uses, and its nodes in pre-order. SceneLoader reads one from a
+ * .scene text file and LoadedScene turns one into a scene graph.
+ * <p>
+ * It can also be written to a binary file, which readBinary maps into memory and copies
+ * straight into arrays, with nothing to tokenise or multiply out.
+ */
+public class SceneFile {
+
+  // node kinds
+  public static final int GROUP = 0;      // NameNode
+  public static final int STATIC = 1;     // StaticNode
+  public static final int TRANSFORM = 2;  // TransformNode
+  public static final int SHAPE = 3;      // ModelNode, ref is a model
+  public static final int LIGHT = 4;      // LightNode, ref is a light name
+
+  private static final int MAGIC = 0x53474231;  // "SGB1"
+  private static final int VERSION = 1;
+
+  static class Decl {
+    String name;
+  }
+
+  static final class MeshDecl extends Decl {
+    String source;   // source is one of the built-in meshes, e.g. "Cube"
+  }
+
+  static final class TextureDecl extends Decl {
+    String path;
+  }
+
+  static final class ShaderDecl extends Decl {
+    String vertexPath, fragmentPath;
+    boolean alphaTested;
+  }
+
+  static final class MaterialDecl extends Decl {
+    float[] values = new float[10];  // ambient, diffuse, specular, shininess
+  }
+
+  static final class ModelDecl extends Decl {
+    int mesh, shader, material, texture1 = -1, texture2 = -1;
+    int[] lights;       // indices into lightNames
+    int[] spotLights;   // null if the model has none
+  }
+
+  static final class PoseDecl extends Decl {
+    float[] matrix = new float[16];
+  }
+
+  ArrayList<String> lightNames = new ArrayList<String>();
+  ArrayList<MeshDecl> meshes = new ArrayList<MeshDecl>();
+  ArrayList<TextureDecl> textures = new ArrayList<TextureDecl>();
+  ArrayList<ShaderDecl> shaders = new ArrayList<ShaderDecl>();
+  ArrayList<MaterialDecl> materials = new ArrayList<MaterialDecl>();
+  ArrayList<ModelDecl> models = new ArrayList<ModelDecl>();
+  ArrayList<PoseDecl> poses = new ArrayList<PoseDecl>();
+
+  // the nodes, in pre-order
+  int nodeCount;
+  int[] kinds = new int[16];
+  int[] parents = new int[16];   // -1 for the root
+  int[] refs = new int[16];
+  String[] names = new String[16];
+  float[] matrices = new float[16*16];  // each node's transform, identity for nodes without one
+
+  /**
+   * Appends a node, which must come after its parent.
+   *
+   * @param matrix The transform in GLSL order, or null for identity
+   * @return  The node's index
+   */
+  int addNode(int kind, String name, int parent, int ref, float[] matrix) {
+    if (nodeCount == kinds.length) {
+      int n = nodeCount*2;
+      kinds = Arrays.copyOf(kinds, n);
+      parents = Arrays.copyOf(parents, n);
+      refs = Arrays.copyOf(refs, n);
+      names = Arrays.copyOf(names, n);
+      matrices = Arrays.copyOf(matrices, n*16);
+    }
+    kinds[nodeCount] = kind;
+    parents[nodeCount] = parent;
+    refs[nodeCount] = ref;
+    names[nodeCount] = name;
+    if (matrix == null) {
+      for (int i=0; i<4; i++) {
+        matrices[nodeCount*16+i*5] = 1;
+      }
+    }
+    else {
+      System.arraycopy(matrix, 0, matrices, nodeCount*16, 16);
+    }
+    return nodeCount++;
+  }
+
+  int lightIndex(String name) {
+    int i = lightNames.indexOf(name);
+    if (i < 0) {
+      i = lightNames.size();
+      lightNames.add(name);
+    }
+    return i;
+  }
+
+  public int getNodeCount() {
+    return nodeCount;
+  }
+
+  // ***************************************************
+  /* Binary form
+   * Big-endian. Strings are a short byte count then UTF-8. The node arrays are stored
+   * whole, one after the other, so they are read with bulk copies.
+   */
+
+  /**
+   * Writes the binary form next to path and then moves it into place, so a write that
+   * fails part way never leaves a truncated file at path.
+   */
+  public void writeBinary(String path) throws IOException {
+    Path target = Paths.get(path).toAbsolutePath();
+    Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+    try {
+      writeBinary(temporary);
+      Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+    finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  private void writeBinary(Path path) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(lightNames.size());
+      for (String name : lightNames) {
+        writeString(out, name);
+      }
+      out.writeInt(meshes.size());
+      for (MeshDecl m : meshes) {
+        writeString(out, m.name);
+        writeString(out, m.source);
+      }
+      out.writeInt(textures.size());
+      for (TextureDecl t : textures) {
+        writeString(out, t.name);
+        writeString(out, t.path);
+      }
+      out.writeInt(shaders.size());
+      for (ShaderDecl s : shaders) {
+        writeString(out, s.name);
+        writeString(out, s.vertexPath);
+        writeString(out, s.fragmentPath);
+        out.writeBoolean(s.alphaTested);
+      }
+      out.writeInt(materials.size());
+      for (MaterialDecl m : materials) {
+        writeString(out, m.name);
+        writeFloats(out, m.values, 0, 10);
+      }
+      out.writeInt(models.size());
+      for (ModelDecl m : models) {
+        writeString(out, m.name);
+        out.writeInt(m.mesh);
+        out.writeInt(m.shader);
+        out.writeInt(m.material);
+        out.writeInt(m.texture1);
+        out.writeInt(m.texture2);
+        writeInts(out, m.lights);
+        writeInts(out, m.spotLights);
+      }
+      out.writeInt(poses.size());
+      for (PoseDecl p : poses) {
+        writeString(out, p.name);
+        writeFloats(out, p.matrix, 0, 16);
+      }
+      out.writeInt(nodeCount);
+      writeInts(out, kinds, nodeCount);
+      writeInts(out, parents, nodeCount);
+      writeInts(out, refs, nodeCount);
+      writeFloats(out, matrices, 0, nodeCount*16);
+      for (int i=0; i<nodeCount; i++) {
+        writeString(out, names[i]);
+      }
+    }
+    finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Reads a file written by writeBinary.
+   *
+   * @return  The scene, or null if the file was written by a different version
+   */
+  public static SceneFile readBinary(String path) throws IOException {
+    FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+    try {
+      ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (in.remaining() < 8 || in.getInt() != MAGIC || in.getInt() != VERSION) {
+        return null;
+      }
+      SceneFile scene = new SceneFile();
+      for (int n = in.getInt(); n > 0; n--) {
+        scene.lightNames.add(readString(in));
+      }
+      for (int n = in.getInt(); n > 0; n--) {
+        MeshDecl m = new MeshDecl();
+        m.name = readString(in);
+        m.source = readString(in);
+        scene.meshes.add(m);
+      }
+      for (int n = in.getInt(); n > 0; n--) {
+        TextureDecl t = new TextureDecl();
+        t.name = readString(in);
+        t.path = readString(in);
+        scene.textures.add(t);
+      }
+      for (int n = in.getInt(); n > 0; n--) {
+        ShaderDecl s = new ShaderDecl();
+        s.name = readString(in);
+        s.vertexPath = readString(in);
+        s.fragmentPath = readString(in);
+        s.alphaTested = in.get() != 0;
+        scene.shaders.add(s);
+      }
+      for (int n = in.getInt(); n > 0; n--) {
+        MaterialDecl m = new MaterialDecl();
+        m.name = readString(in);
+        readFloats(in, m.values, 10);
+        scene.materials.add(m);
+      }
+      for (int n = in.getInt(); n > 0; n--) {
+        ModelDecl m = new ModelDecl();
+        m.name = readString(in);
+        m.mesh = in.getInt();
+        m.shader = in.getInt();
+        m.material = in.getInt();
+        m.texture1 = in.getInt();
+        m.texture2 = in.getInt();
+        m.lights = readInts(in);
+        m.spotLights = readInts(in);
+        scene.models.add(m);
+      }
+      for (int n = in.getInt(); n > 0; n--) {
+        PoseDecl p = new PoseDecl();
+        p.name = readString(in);
+        readFloats(in, p.matrix, 16);
+        scene.poses.add(p);
+      }
+      int n = in.getInt();
+      scene.nodeCount = n;
+      scene.kinds = readInts(in, n);
+      scene.parents = readInts(in, n);
+      scene.refs = readInts(in, n);
+      scene.matrices = new float[n*16];
+      readFloats(in, scene.matrices, n*16);
+      scene.names = new String[n];
+      for (int i=0; i<n; i++) {
+        scene.names[i] = readString(in);
+      }
+      return scene;
+    }
+    finally {
+      channel.close();
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    out.writeShort(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(ByteBuffer in) {
+    byte[] bytes = new byte[in.getShort() & 0xFFFF];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeFloats(DataOutputStream out, float[] f, int offset, int n) throws IOException {
+    for (int i=0; i<n; i++) {
+      out.writeFloat(f[offset+i]);
+    }
+  }
+
+  private static void readFloats(ByteBuffer in, float[] dest, int n) {
+    in.asFloatBuffer().get(dest, 0, n);
+    in.position(in.position()+n*4);
+  }
+
+  // a count, -1 for null, then the ints
+  private static void writeInts(DataOutputStream out, int[] a) throws IOException {
+    out.writeInt(a == null ? -1 : a.length);
+    if (a != null) {
+      writeInts(out, a, a.length);
+    }
+  }
+
+  private static void writeInts(DataOutputStream out, int[] a, int n) throws IOException {
+    for (int i=0; i<n; i++) {
+      out.writeInt(a[i]);
+    }
+  }
+
+  private static int[] readInts(ByteBuffer in) {
+    int n = in.getInt();
+    return n < 0 ? null : readInts(in, n);
+  }
+
+  private static int[] readInts(ByteBuffer in, int n) {
+    int[] a = new int[n];
+    in.asIntBuffer().get(a);
+    in.position(in.position()+n*4);
+    return a;
+  }
+
+}
@@ -0,0 +1,79 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Finds the nodes of one scene graph by name or by path. A node's path is the names
+ * from the root down to it joined with '/', e.g. "table/top/egg". Names need not be
+ * unique, so each lookup gives a list. SGNode.addChild keeps the index up to date.
+ */
+public class SceneIndex {
+
+  private HashMap<String, ArrayList<SGNode>> byPath = new HashMap<String, ArrayList<SGNode>>();
+  private HashMap<String, ArrayList<SGNode>> byName = new HashMap<String, ArrayList<SGNode>>();
+
+  void add(SGNode node) {
+    put(byPath, node.getPath(), node);
+    put(byName, node.name, node);
+  }
+
+  private static void put(HashMap<String, ArrayList<SGNode>> map, String key, SGNode node) {
+    ArrayList<SGNode> nodes = map.get(key);
+    if (nodes == null) {
+      nodes = new ArrayList<SGNode>(1);
+      map.put(key, nodes);
+    }
+    nodes.add(node);
+  }
+
+  /**
+   * @return The first node added at path, or null if there is none
+   */
+  public SGNode find(String path) {
+    ArrayList<SGNode> nodes = byPath.get(path);
+    return nodes == null ? null : nodes.get(0);
+  }
+
+  /**
+   * @return The nodes at path, in the order they were added
+   */
+  public List<SGNode> findAll(String path) {
+    return unmodifiable(byPath.get(path));
+  }
+
+  /**
+   * @return The nodes called name, anywhere in the scene graph
+   */
+  public List<SGNode> findByName(String name) {
+    return unmodifiable(byName.get(name));
+  }
+
+  /**
+   * @return The nodes of the given type at or below the nodes at path, in tree order
+   */
+  public <T extends SGNode> List<T> findAll(String path, Class<T> type) {
+    ArrayList<T> found = new ArrayList<T>();
+    ArrayList<SGNode> nodes = byPath.get(path);
+    if (nodes != null) {
+      for (int i=0; i<nodes.size(); i++) {
+        collect(nodes.get(i), type, found);
+      }
+    }
+    return found;
+  }
+
+  private static <T extends SGNode> void collect(SGNode node, Class<T> type, ArrayList<T> found) {
+    if (type.isInstance(node)) {
+      found.add(type.cast(node));
+    }
+    for (int i=0; i<node.children.size(); i++) {
+      collect(node.children.get(i), type, found);
+    }
+  }
+
+  private static List<SGNode> unmodifiable(ArrayList<SGNode> nodes) {
+    return nodes == null ? Collections.<SGNode>emptyList() : Collections.unmodifiableList(nodes);
+  }
+
+}
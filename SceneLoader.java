@@ -0,0 +1,403 @@
+import gmaths.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import com.jogamp.opengl.*;
+
+/**
+ * Reads scene descriptions. A .scene file is a list of declarations followed by one
+ * root node. '#' starts a comment, and names with spaces go in double quotes.
+ * <pre>
+ *   mesh quad TwoTriangles                      # a built-in mesh: TwoTriangles, Cube or Sphere
+ *   texture floor textures/floor.jpg
+ *   shader plain shaders/tt_vs.glsl shaders/tt_fs.glsl [alphatested]
+ *   material wood [ambient r g b] [diffuse r g b] [specular r g b] [shininess s]
+ *   lights sun                                  # the lights used by the models after this
+ *   spotlights lamp1 lamp2                      # likewise, nothing after the keyword for none
+ *   model floor quad plain wood floor [texture2]
+ *   pose raised rotateZ 30 translate 0 1 0      # a named transform, for animation code
+ *
+ *   group "Room root" {
+ *     static "Walls" { ... }
+ *     transform "Floor transform" scale 16 1 16 {
+ *       shape "floor shape" floor
+ *     }
+ *     light "Light" sun
+ *   }
+ * </pre>
+ * Transforms are translate x y z, scale x y z, rotateX/rotateY/rotateZ degrees, applied
+ * in the order written. Lights are made by the program and passed in by name.
+ * Declarations other than lights, spotlights, pose and the nodes take the rest of their line.
+ * <p>
+ * load() keeps a binary copy next to the text file (floor.scene -> floor.scenebin) and
+ * reads that instead while it is newer than the text.
+ */
+public final class SceneLoader {
+
+  private static final String[] BUILT_IN_MESHES = {"TwoTriangles", "Cube", "Sphere"};
+
+  private final String path;
+  private final ArrayList<String> tokens = new ArrayList<String>();
+  private final ArrayList<Integer> lines = new ArrayList<Integer>();
+  private int pos;
+  private SceneFile scene = new SceneFile();
+
+  private SceneLoader(String path, String text) {
+    this.path = path;
+    tokenise(text);
+  }
+
+  /**
+   * Builds the scene in a file, from its binary copy if that is up to date.
+   *
+   * @param lights The lights the file refers to, by name
+   */
+  public static LoadedScene load(GL3 gl, String path, Camera camera, Map<String, Light> lights) {
+    return new LoadedScene(gl, read(path), camera, lights);
+  }
+
+  /**
+   * Reads a scene file, from its binary copy if that is up to date, writing a new
+   * binary copy if it is not.
+   */
+  public static SceneFile read(String path) {
+    String binaryPath = binaryPath(path);
+    File text = new File(path), binary = new File(binaryPath);
+    try {
+      if (binary.exists() && binary.lastModified() >= text.lastModified()) {
+        try {
+          SceneFile scene = SceneFile.readBinary(binaryPath);
+          if (scene != null) {
+            return scene;
+          }
+        }
+        catch (IOException | RuntimeException e) {
+          // e.g. truncated by a crash; the text is still there, and parsing it rewrites the binary
+          System.out.println("Unable to read "+binaryPath+", parsing "+path+" instead: "+e);
+        }
+      }
+      SceneFile scene = parse(path);
+      try {
+        scene.writeBinary(binaryPath);
+      }
+      catch (IOException e) {
+        System.out.println("Unable to write "+binaryPath+": "+e.getMessage());
+      }
+      return scene;
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Parses a .scene text file, ignoring any binary copy.
+   */
+  public static SceneFile parse(String path) throws IOException {
+    String text = new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8);
+    return new SceneLoader(path, text).parse();
+  }
+
+  public static String binaryPath(String path) {
+    return (path.endsWith(".scene") ? path.substring(0, path.length()-6) : path)+".scenebin";
+  }
+
+  /**
+   * Writes the binary copy of each scene file given, e.g. as a build step.
+   */
+  public static void main(String[] args) throws IOException {
+    for (String path : args) {
+      SceneFile scene = parse(path);
+      scene.writeBinary(binaryPath(path));
+      System.out.println(path+": "+scene.getNodeCount()+" nodes");
+    }
+  }
+
+  // ***************************************************
+  /* Parsing
+   */
+
+  private SceneFile parse() {
+    int[] lights = new int[0];
+    int[] spotLights = null;
+    boolean rootSeen = false;
+    while (pos < tokens.size()) {
+      String keyword = next();
+      switch (keyword) {
+        case "mesh":
+          SceneFile.MeshDecl mesh = new SceneFile.MeshDecl();
+          mesh.name = next();
+          mesh.source = next();
+          if (!Arrays.asList(BUILT_IN_MESHES).contains(mesh.source)) {
+            throw error("unknown mesh "+mesh.source);
+          }
+          scene.meshes.add(mesh);
+          break;
+        case "texture":
+          SceneFile.TextureDecl texture = new SceneFile.TextureDecl();
+          texture.name = next();
+          texture.path = next();
+          scene.textures.add(texture);
+          break;
+        case "shader":
+          SceneFile.ShaderDecl shader = new SceneFile.ShaderDecl();
+          shader.name = next();
+          shader.vertexPath = next();
+          shader.fragmentPath = next();
+          if (onSameLine() && peek().equals("alphatested")) {
+            next();
+            shader.alphaTested = true;
+          }
+          scene.shaders.add(shader);
+          break;
+        case "material":
+          scene.materials.add(parseMaterial());
+          break;
+        case "lights":
+          lights = parseLightList();
+          break;
+        case "spotlights":
+          spotLights = parseLightList();
+          if (spotLights.length == 0) {
+            spotLights = null;
+          }
+          break;
+        case "model":
+          scene.models.add(parseModel(lights, spotLights));
+          break;
+        case "pose":
+          SceneFile.PoseDecl pose = new SceneFile.PoseDecl();
+          pose.name = next();
+          parseTransform().toFloatArrayForGLSL(pose.matrix);
+          scene.poses.add(pose);
+          break;
+        case "group":
+        case "static":
+        case "transform":
+          if (rootSeen) {
+            throw error("a scene has only one root node");
+          }
+          rootSeen = true;
+          parseNode(keyword, -1);
+          break;
+        default:
+          throw error("unexpected "+keyword);
+      }
+    }
+    if (!rootSeen) {
+      throw error("no root node");
+    }
+    return scene;
+  }
+
+  private SceneFile.MaterialDecl parseMaterial() {
+    SceneFile.MaterialDecl material = new SceneFile.MaterialDecl();
+    material.name = next();
+    copy(Material.DEFAULT_AMBIENT, material.values, 0);
+    copy(Material.DEFAULT_DIFFUSE, material.values, 3);
+    copy(Material.DEFAULT_SPECULAR, material.values, 6);
+    material.values[9] = Material.DEFAULT_SHININESS;
+    while (onSameLine()) {
+      String property = next();
+      int offset = property.equals("ambient") ? 0 : property.equals("diffuse") ? 3
+                 : property.equals("specular") ? 6 : property.equals("shininess") ? 9 : -1;
+      if (offset < 0) {
+        throw error("unknown material property "+property);
+      }
+      for (int i=offset; i<(offset == 9 ? 10 : offset+3); i++) {
+        material.values[i] = nextFloat();
+      }
+    }
+    return material;
+  }
+
+  private static void copy(Vec3 v, float[] dest, int offset) {
+    dest[offset] = v.x;
+    dest[offset+1] = v.y;
+    dest[offset+2] = v.z;
+  }
+
+  private int[] parseLightList() {
+    ArrayList<Integer> list = new ArrayList<Integer>();
+    while (onSameLine()) {
+      list.add(scene.lightIndex(next()));
+    }
+    int[] lights = new int[list.size()];
+    for (int i=0; i<lights.length; i++) {
+      lights[i] = list.get(i);
+    }
+    return lights;
+  }
+
+  private SceneFile.ModelDecl parseModel(int[] lights, int[] spotLights) {
+    if (lights.length == 0) {
+      throw error("no lights for model");
+    }
+    SceneFile.ModelDecl model = new SceneFile.ModelDecl();
+    model.name = next();
+    model.mesh = lookUp(scene.meshes, next(), "mesh");
+    model.shader = lookUp(scene.shaders, next(), "shader");
+    model.material = lookUp(scene.materials, next(), "material");
+    if (onSameLine()) {
+      model.texture1 = lookUp(scene.textures, next(), "texture");
+    }
+    if (onSameLine()) {
+      model.texture2 = lookUp(scene.textures, next(), "texture");
+    }
+    model.lights = lights;
+    model.spotLights = spotLights;
+    return model;
+  }
+
+  private void parseNode(String kind, int parent) {
+    String name = next();
+    int node;
+    switch (kind) {
+      case "group":
+        node = scene.addNode(SceneFile.GROUP, name, parent, 0, null);
+        break;
+      case "static":
+        node = scene.addNode(SceneFile.STATIC, name, parent, 0, null);
+        break;
+      case "transform":
+        node = scene.addNode(SceneFile.TRANSFORM, name, parent, 0, parseTransform().toFloatArrayForGLSL());
+        break;
+      case "shape":
+        node = scene.addNode(SceneFile.SHAPE, name, parent, lookUp(scene.models, next(), "model"), null);
+        break;
+      case "light":
+        node = scene.addNode(SceneFile.LIGHT, name, parent, scene.lightIndex(next()), null);
+        break;
+      default:
+        throw error("unexpected "+kind);
+    }
+    if (pos < tokens.size() && peek().equals("{")) {
+      next();
+      while (!peek().equals("}")) {
+        parseNode(next(), node);
+      }
+      next();
+    }
+  }
+
+  private Mat4 parseTransform() {
+    Mat4 m = new Mat4(1);
+    while (pos < tokens.size() && isTransform(peek())) {
+      String op = next();
+      Mat4 t;
+      switch (op) {
+        case "translate": t = Mat4Transform.translate(nextFloat(), nextFloat(), nextFloat()); break;
+        case "scale":     t = Mat4Transform.scale(nextFloat(), nextFloat(), nextFloat()); break;
+        case "rotateX":   t = Mat4Transform.rotateAroundX(nextFloat()); break;
+        case "rotateY":   t = Mat4Transform.rotateAroundY(nextFloat()); break;
+        default:          t = Mat4Transform.rotateAroundZ(nextFloat()); break;
+      }
+      m = Mat4.multiply(t, m);
+    }
+    return m;
+  }
+
+  private static boolean isTransform(String token) {
+    return token.equals("translate") || token.equals("scale")
+        || token.equals("rotateX") || token.equals("rotateY") || token.equals("rotateZ");
+  }
+
+  private int lookUp(List<? extends SceneFile.Decl> declarations, String name, String what) {
+    for (int i=0; i<declarations.size(); i++) {
+      if (declarations.get(i).name.equals(name)) {
+        return i;
+      }
+    }
+    throw error("no "+what+" called "+name);
+  }
+
+  // ***************************************************
+  /* Tokens
+   */
+
+  private void tokenise(String text) {
+    int line = 1;
+    int i = 0, n = text.length();
+    while (i < n) {
+      char c = text.charAt(i);
+      if (c == '\n') {
+        line++;
+        i++;
+      }
+      else if (Character.isWhitespace(c)) {
+        i++;
+      }
+      else if (c == '#') {
+        while (i < n && text.charAt(i) != '\n') {
+          i++;
+        }
+      }
+      else if (c == '{' || c == '}') {
+        add(String.valueOf(c), line);
+        i++;
+      }
+      else if (c == '"') {
+        int end = text.indexOf('"', i+1);
+        if (end < 0 || text.substring(i, end).indexOf('\n') >= 0) {
+          throw new IllegalArgumentException(path+":"+line+": unterminated string");
+        }
+        add(text.substring(i+1, end), line);
+        i = end+1;
+      }
+      else {
+        int start = i;
+        while (i < n && !Character.isWhitespace(text.charAt(i)) && "{}\"#".indexOf(text.charAt(i)) < 0) {
+          i++;
+        }
+        add(text.substring(start, i), line);
+      }
+    }
+  }
+
+  private void add(String token, int line) {
+    tokens.add(token);
+    lines.add(line);
+  }
+
+  private String next() {
+    if (pos == tokens.size()) {
+      throw error("unexpected end of file");
+    }
+    return tokens.get(pos++);
+  }
+
+  private String peek() {
+    if (pos == tokens.size()) {
+      throw error("unexpected end of file");
+    }
+    return tokens.get(pos);
+  }
+
+  // true if there is another token on the line of the last one read
+  private boolean onSameLine() {
+    return pos < tokens.size() && lines.get(pos).equals(lines.get(pos-1));
+  }
+
+  private float nextFloat() {
+    String token = next();
+    try {
+      return Float.parseFloat(token);
+    }
+    catch (NumberFormatException e) {
+      throw error("expected a number, found "+token);
+    }
+  }
+
+  private IllegalArgumentException error(String message) {
+    int line = lines.isEmpty() ? 1 : lines.get(Math.max(0, Math.min(pos, lines.size())-1));
+    return new IllegalArgumentException(path+":"+line+": "+message);
+  }
+
+}
@@ -3,6 +3,11 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
 import com.jogamp.opengl.*;
 import com.jogamp.opengl.util.glsl.*;  
   
@@ -15,65 +20,244 @@ public class Shader {
   private String fragmentShaderSource;
 
   private String vertexPath, fragmentPath;
+  private boolean alphaTested;
+  private Shader instanced;
+  private boolean instancedLoaded;
+  private TreeMap<String, String> defines;
+  private Shader base;   // the shader the variants are made from, whose variants map they share
+  private HashMap<String, Shader> variants;
+  // every active uniform, from glGetActiveUniform after linking, so setting one needs no glGetUniformLocation
+  private HashMap<String, Integer> locations = new HashMap<String, Integer>();
+  private HashMap<String, Integer> types = new HashMap<String, Integer>();
+  private HashSet<String> blocks = new HashSet<String>();
   /* The constructor */
   public Shader(GL3 gl, String vertexPath, String fragmentPath) {
+    this(gl, vertexPath, fragmentPath, new TreeMap<String, String>());
+  }
+
+  /**
+   * Compiles the shaders with some macros defined, see ShaderPreprocessor.
+   * Use getVariant() to share programs between models that want the same defines.
+   */
+  public Shader(GL3 gl, String vertexPath, String fragmentPath, Map<String, String> defines) {
 
     this.vertexPath = vertexPath;
     this.fragmentPath = fragmentPath;
+    this.defines = new TreeMap<String, String>(defines);
+    base = this;
     try {
-      vertexShaderSource = new String(Files.readAllBytes(Paths.get(vertexPath)), Charset.defaultCharset());
-      fragmentShaderSource = new String(Files.readAllBytes(Paths.get(fragmentPath)), Charset.defaultCharset());
+      vertexShaderSource = ShaderPreprocessor.process(vertexPath, this.defines);
+      fragmentShaderSource = ShaderPreprocessor.process(fragmentPath, this.defines);
     }
     catch (IOException e) {
       e.printStackTrace();
     }
     if (DISPLAY_SHADERS) display();
     ID = compileAndLink(gl);
+    findUniforms(gl);
+    // the uniform blocks shared by every program, each at a fixed binding point
+    bindBlock(gl, LightingBuffer.BLOCK_NAME, LightingBuffer.BINDING);
+    bindBlock(gl, CameraBuffer.BLOCK_NAME, CameraBuffer.BINDING);
   }
   
   public int getID() {
     return ID;
   }
   
+  /**
+   * Marks a shader that discards fragments, so a RenderQueue draws it after the opaque shaders.
+   */
+  public void setAlphaTested(boolean alphaTested) {
+    this.alphaTested = alphaTested;
+  }
+
+  public boolean isAlphaTested() {
+    return alphaTested;
+  }
+
+  /**
+   * The same shader with its vertex shader swapped for the instanced variant, which takes the
+   * model matrix from vertex attributes 3 to 6, e.g. shaders/tt_vs.glsl -> shaders/tt_instanced_vs.glsl.
+   * It is compiled the first time it is asked for.
+   *
+   * @return  The instanced shader, or null if there is no instanced variant of the vertex shader
+   */
+  public Shader getInstancedVariant(GL3 gl) {
+    if (!instancedLoaded) {
+      instancedLoaded = true;
+      String path = vertexPath.replace("_vs.glsl", "_instanced_vs.glsl");
+      if (!path.equals(vertexPath) && Files.exists(Paths.get(path))) {
+        instanced = new Shader(gl, path, fragmentPath, defines);
+        instanced.setAlphaTested(alphaTested);
+      }
+    }
+    return instanced;
+  }
+
+  /**
+   * The same shaders compiled with more macros defined, e.g. NR_SPOT_LIGHTS -> 0, so loops get
+   * constant bounds and unused features drop out. Macros neither source mentions are ignored,
+   * so asking a shader for a feature it doesn't have gives back the same shader. Each
+   * combination is compiled once and shared by everything that asks for it.
+   *
+   * @param features Macro name to value, added to (or replacing) the ones this shader has
+   */
+  public Shader getVariant(GL3 gl, Map<String, String> features) {
+    TreeMap<String, String> merged = new TreeMap<String, String>(defines);
+    for (Map.Entry<String, String> feature : features.entrySet()) {
+      String name = feature.getKey();
+      if (vertexShaderSource.contains(name) || fragmentShaderSource.contains(name)) {
+        merged.put(name, feature.getValue());
+      }
+    }
+    if (merged.equals(defines)) {
+      return this;
+    }
+    if (base.variants == null) {
+      base.variants = new HashMap<String, Shader>();
+    }
+    String key = merged.toString();
+    Shader variant = base.variants.get(key);
+    if (variant == null) {
+      variant = merged.equals(base.defines) ? base : new Shader(gl, vertexPath, fragmentPath, merged);
+      variant.base = base;
+      variant.setAlphaTested(alphaTested);
+      base.variants.put(key, variant);
+    }
+    return variant;
+  }
+
+  /**
+   * @return The macros this shader was compiled with
+   */
+  public Map<String, String> getDefines() {
+    return Collections.unmodifiableMap(defines);
+  }
+
   public void use(GL3 gl) {
-    gl.glUseProgram(ID);
+    GLState.get(gl).useProgram(gl, ID);
   }
   
+  /**
+   * @return The location of an active uniform, or -1 if the program does not use it
+   */
+  public int getLocation(String name) {
+    Integer location = locations.get(name);
+    return location == null ? -1 : location;
+  }
+
+  public Uniform.Int getInt(String name) {
+    checkType(name, "int", GL2ES2.GL_INT, GL2ES2.GL_BOOL, GL2ES2.GL_SAMPLER_2D);
+    return new Uniform.Int(name, getLocation(name));
+  }
+
+  public Uniform.Float getFloat(String name) {
+    checkType(name, "float", GL.GL_FLOAT);
+    return new Uniform.Float(name, getLocation(name));
+  }
+
+  public Uniform.Vec2 getVec2(String name) {
+    checkType(name, "vec2", GL2ES2.GL_FLOAT_VEC2);
+    return new Uniform.Vec2(name, getLocation(name));
+  }
+
+  public Uniform.Vec3 getVec3(String name) {
+    checkType(name, "vec3", GL2ES2.GL_FLOAT_VEC3);
+    return new Uniform.Vec3(name, getLocation(name));
+  }
+
+  public Uniform.Mat4 getMat4(String name) {
+    checkType(name, "mat4", GL2ES2.GL_FLOAT_MAT4);
+    return new Uniform.Mat4(name, getLocation(name));
+  }
+
+  /**
+   * @return true if the program declares the uniform block, e.g. LightingBuffer.BLOCK_NAME
+   */
+  public boolean hasBlock(String name) {
+    return blocks.contains(name);
+  }
+
+  private void bindBlock(GL3 gl, String name, int binding) {
+    int index = gl.glGetUniformBlockIndex(ID, name);
+    if (index != GL2ES3.GL_INVALID_INDEX) {
+      gl.glUniformBlockBinding(ID, index, binding);
+      blocks.add(name);
+    }
+  }
+
+  // Uniforms the program does not use have no type, and any handle will do for them
+  private void checkType(String name, String typeName, int... allowed) {
+    Integer type = types.get(name);
+    if (type == null) {
+      return;
+    }
+    for (int t : allowed) {
+      if (type == t) {
+        return;
+      }
+    }
+    throw new IllegalArgumentException("uniform "+name+" in "+vertexPath+" + "+fragmentPath+" is not a "+typeName);
+  }
+
   public void setInt(GL3 gl, String name, int value) {
-    int location = gl.glGetUniformLocation(ID, name);
-    gl.glUniform1i(location, value);
+    gl.glUniform1i(getLocation(name), value);
   }
   
   public void setFloat(GL3 gl, String name, float value) {
-    int location = gl.glGetUniformLocation(ID, name);
-    gl.glUniform1f(location, value);
+    gl.glUniform1f(getLocation(name), value);
   }
   
   public void setFloat(GL3 gl, String name, float f1, float f2) {
-    int location = gl.glGetUniformLocation(ID, name);
-    gl.glUniform2f(location, f1, f2);
+    gl.glUniform2f(getLocation(name), f1, f2);
   }
   
   public void setFloat(GL3 gl, String name, float f1, float f2, float f3) {
-    int location = gl.glGetUniformLocation(ID, name);
-    gl.glUniform3f(location, f1, f2, f3);
+    gl.glUniform3f(getLocation(name), f1, f2, f3);
   }
   
   public void setFloat(GL3 gl, String name, float f1, float f2, float f3, float f4) {
-    int location = gl.glGetUniformLocation(ID, name);
-    gl.glUniform4f(location, f1, f2, f3, f4);
+    gl.glUniform4f(getLocation(name), f1, f2, f3, f4);
   }
   
   public void setFloatArray(GL3 gl, String name, float[] f) {
-    int location = gl.glGetUniformLocation(ID, name);
-    gl.glUniformMatrix4fv(location, 1, false, f, 0);
+    gl.glUniformMatrix4fv(getLocation(name), 1, false, f, 0);
   }
   
   public void setVec3(GL3 gl, String name, Vec3 v) {
-    int location = gl.glGetUniformLocation(ID, name);
-    gl.glUniform3f(location, v.x, v.y, v.z);
+    gl.glUniform3f(getLocation(name), v.x, v.y, v.z);
   }
   
+  // Arrays of structs are listed a member at a time, e.g. SpotLights[1].position. Arrays of plain
+  // types are listed once, as a[0], so each element is looked up here.
+  private void findUniforms(GL3 gl) {
+    int[] count = new int[1], maxLength = new int[1];
+    gl.glGetProgramiv(ID, GL2ES2.GL_ACTIVE_UNIFORMS, count, 0);
+    gl.glGetProgramiv(ID, GL2ES2.GL_ACTIVE_UNIFORM_MAX_LENGTH, maxLength, 0);
+    byte[] nameBytes = new byte[Math.max(maxLength[0], 1)];
+    int[] length = new int[1], size = new int[1], type = new int[1];
+    for (int i=0; i<count[0]; i++) {
+      gl.glGetActiveUniform(ID, i, nameBytes.length, length, 0, size, 0, type, 0, nameBytes, 0);
+      String name = new String(nameBytes, 0, length[0], Charset.forName("US-ASCII"));
+      int location = gl.glGetUniformLocation(ID, name);
+      if (location < 0) {
+        continue;   // in a uniform block
+      }
+      locations.put(name, location);
+      types.put(name, type[0]);
+      if (name.endsWith("[0]")) {
+        String base = name.substring(0, name.length()-3);
+        locations.put(base, location);
+        types.put(base, type[0]);
+        for (int j=1; j<size[0]; j++) {
+          String element = base+"["+j+"]";
+          locations.put(element, gl.glGetUniformLocation(ID, element));
+          types.put(element, type[0]);
+        }
+      }
+    }
+  }
+
   private void display() {
     System.out.println("***Vertex shader***");
     System.out.println(vertexShaderSource);
@@ -81,26 +265,9 @@ public class Shader {
     System.out.println(fragmentShaderSource);
   }
   
+  // Shaders made from the same sources and defines share one program, see ProgramCache
   private int compileAndLink(GL3 gl) {
-    String[][] sources = new String[1][1];
-    sources[0] = new String[]{ vertexShaderSource };
-    ShaderCode vertexShaderCode = new ShaderCode(GL3.GL_VERTEX_SHADER, sources.length, sources);
-    boolean compiled = vertexShaderCode.compile(gl, System.err);
-    if (!compiled)
-      System.err.println("[error] Unable to compile vertex shader: " + sources);
-    sources[0] = new String[]{ fragmentShaderSource };
-    ShaderCode fragmentShaderCode = new ShaderCode(GL3.GL_FRAGMENT_SHADER, sources.length, sources);
-    compiled = fragmentShaderCode.compile(gl, System.err);
-    if (!compiled)
-      System.err.println("[error] Unable to compile fragment shader: " + sources);
-    ShaderProgram program = new ShaderProgram();
-    program.init(gl);
-    program.add(vertexShaderCode);
-    program.add(fragmentShaderCode);
-    program.link(gl, System.out);
-//    if (!program.validateProgram(gl, System.out))
-//      System.err.println("[error] Unable to link program PATHS: "+vertexPath+ " "+fragmentPath);
-    return program.program();
+    return ProgramCache.get(gl).getProgram(gl, vertexShaderSource, fragmentShaderSource, vertexPath+" + "+fragmentPath);
   }
 
 }
\ No newline at end of file
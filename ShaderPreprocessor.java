@@ -0,0 +1,72 @@
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Expands a GLSL file before it is compiled:
+ * <pre>
+ *   #include "include/lit.glsl"    // the file, relative to the one including it, pasted in place
+ * </pre>
+ * Each file is pasted at most once, so includes need no guards. Defines given by the
+ * program go straight after the #version line, before anything they could change.
+ * <p>
+ * #line directives keep compiler errors pointing at the right place: the source string
+ * number counts the files in the order they are first included, 0 being the file processed.
+ */
+public class ShaderPreprocessor {
+
+  private List<Path> files = new ArrayList<Path>();
+  private StringBuilder out = new StringBuilder();
+
+  private ShaderPreprocessor() {
+  }
+
+  /**
+   * @param path The shader file
+   * @param defines Macros to define, name to value, e.g. NR_WORLD_LIGHTS -> 2; an empty value just defines the name
+   * @return The source with its includes pasted in
+   */
+  public static String process(String path, Map<String, String> defines) throws IOException {
+    ShaderPreprocessor p = new ShaderPreprocessor();
+    p.include(Paths.get(path).normalize(), defines);
+    return p.out.toString();
+  }
+
+  private void include(Path path, Map<String, String> defines) throws IOException {
+    if (files.contains(path)) {
+      return;
+    }
+    int source = files.size();
+    files.add(path);
+    if (source > 0) {
+      out.append("#line 1 ").append(source).append('\n');
+    }
+    String text = new String(Files.readAllBytes(path), Charset.defaultCharset());
+    String[] lines = text.split("\r?\n", -1);
+    for (int i=0; i<lines.length; i++) {
+      String line = lines[i].trim();
+      if (line.startsWith("#include")) {
+        String name = line.substring("#include".length()).trim();
+        if (name.length() < 2 || name.charAt(0) != '"' || name.indexOf('"', 1) != name.length()-1) {
+          throw new IllegalArgumentException(path+":"+(i+1)+": expected #include \"file\"");
+        }
+        include(path.resolveSibling(name.substring(1, name.length()-1)).normalize(), null);
+        out.append("#line ").append(i+2).append(' ').append(source).append('\n');
+        continue;
+      }
+      out.append(lines[i]).append('\n');
+      if (line.startsWith("#version") && defines != null && !defines.isEmpty()) {
+        for (Map.Entry<String, String> define : defines.entrySet()) {
+          out.append("#define ").append(define.getKey()).append(' ').append(define.getValue()).append('\n');
+        }
+        out.append("#line ").append(i+2).append(' ').append(source).append('\n');
+      }
+    }
+  }
+
+}
@@ -8,32 +8,47 @@ public final class Sphere {
   private static final int XLONG = 30;
   private static final int YLAT = 30;
   
-  public static final float[] vertices = createVertices();
-  public static final int[] indices = createIndices();
+  public static final float[] vertices = createVertices(XLONG, YLAT);
+  public static final int[] indices = createIndices(XLONG, YLAT);
 
-  private static float[] createVertices() {
+  /**
+   * @return A sphere of diameter 1 with the given number of points around and from pole to pole,
+   *         shared with every other caller asking for the same tessellation
+   */
+  public static MeshData generate(int longitudes, int latitudes) {
+    MeshData.checkAtLeast("longitudes", longitudes, 3);
+    MeshData.checkAtLeast("latitudes", latitudes, 2);
+    return MeshData.cached("sphere "+longitudes+" "+latitudes,
+        key -> new MeshData(key, createVertices(longitudes, latitudes), createIndices(longitudes, latitudes)));
+  }
+
+  /**
+   * A sphere of diameter 1 tessellated into xLong points around and yLat from pole to pole,
+   * for coarser or finer versions than vertices.
+   */
+  public static float[] createVertices(int xLong, int yLat) {
     double r = 0.5;
     int step = 8;
     //float[] 
-    float[] vertices = new float[XLONG*YLAT*step];
-    for (int j = 0; j<YLAT; ++j) {
-      double b = Math.toRadians(-90+180*(double)(j)/(YLAT-1));
-      for (int i = 0; i<XLONG; ++i) {
-        double a = Math.toRadians(360*(double)(i)/(XLONG-1));
+    float[] vertices = new float[xLong*yLat*step];
+    MeshData.forEachRow(yLat, xLong, j -> {
+      double b = Math.toRadians(-90+180*(double)(j)/(yLat-1));
+      for (int i = 0; i<xLong; ++i) {
+        double a = Math.toRadians(360*(double)(i)/(xLong-1));
         double z = Math.cos(b) * Math.cos(a);
         double x = Math.cos(b) * Math.sin(a);
         double y = Math.sin(b);
-        int base = j*XLONG*step;
+        int base = j*xLong*step;
         vertices[base + i*step+0] = (float)(r*x);
         vertices[base + i*step+1] = (float)(r*y);
         vertices[base + i*step+2] = (float)(r*z); 
         vertices[base + i*step+3] = (float)x;
         vertices[base + i*step+4] = (float)y;
         vertices[base + i*step+5] = (float)z;
-        vertices[base + i*step+6] = (float)(i)/(float)(XLONG-1);
-        vertices[base + i*step+7] = (float)(j)/(float)(YLAT-1);
+        vertices[base + i*step+6] = (float)(i)/(float)(xLong-1);
+        vertices[base + i*step+7] = (float)(j)/(float)(yLat-1);
       }
-    }
+    });
     return vertices;
     
     //debugging code:
@@ -42,25 +57,11 @@ public final class Sphere {
     //}
   }
   
-  private static int[] createIndices() {
-    int[] indices = new int[(XLONG-1)*(YLAT-1)*6];
-    for (int j = 0; j<YLAT-1; ++j) {
-      for (int i = 0; i<XLONG-1; ++i) {
-        int base = j*(XLONG-1)*6;
-        indices[base + i*6+0] = j*XLONG+i;
-        indices[base + i*6+1] = j*XLONG+i+1;
-        indices[base + i*6+2] = (j+1)*XLONG+i+1;
-        indices[base + i*6+3] = j*XLONG+i;
-        indices[base + i*6+4] = (j+1)*XLONG+i+1;
-        indices[base + i*6+5] = (j+1)*XLONG+i;
-      }
-    }
-    return indices;
-    
-    //debugging code:
-    //for (int i=0; i<indices.length; i+=3) {
-    //  System.out.println(indices[i]+", "+indices[i+1]+", "+indices[i+2]);
-    //}
+  /**
+   * @return The indices for createVertices(xLong, yLat)
+   */
+  public static int[] createIndices(int xLong, int yLat) {
+    return MeshData.gridIndices(xLong, yLat);
   }
   
 }
\ No newline at end of file
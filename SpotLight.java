@@ -32,10 +32,10 @@ public class SpotLight extends Light {
   }
 
   @Override
-  public void render(GL3 gl, Mat4 worldTransform) {
-    super.render(gl, worldTransform);
+  public void update(Mat4 worldTransform) {
+    super.update(worldTransform);
     // Fetch the direction from the world matrix
-    this.direction = worldTransform.getXDirection();
+    worldTransform.getXDirection(direction);
   }
 
   public float getCutoff()
@@ -0,0 +1,185 @@
+import gmaths.*;
+import java.util.ArrayList;
+import java.util.List;
+import com.jogamp.opengl.*;
+
+/**
+ * A node for a subtree that never moves once it is built. bake() copies the subtree's
+ * meshes into world space and merges those drawn with the same shader state (see
+ * Model.sharesStateWith) into one mesh each; from then on the merged models are drawn
+ * in place of the original ModelNodes. Anything else that draws, e.g. a LightNode, or an
+ * LODNode, whose mesh changes with distance, is still drawn as it was.
+ * <p>
+ * Once baked, the original nodes are left out of CompiledSceneGraphs and BVHs, so bake
+ * before compiling the graph or building a BVH over it.
+ */
+public class StaticNode extends SGNode {
+
+  private ArrayList<ModelNode> baked;
+  private ArrayList<SGNode> unbaked;
+
+  public StaticNode(String name) {
+    super(name);
+  }
+
+  /**
+   * Bakes the subtree. Call once its world transforms are final, i.e. after the
+   * whole scene graph has been built and updated.
+   */
+  public void bake(GL3 gl) {
+    ArrayList<ModelNode> modelNodes = new ArrayList<ModelNode>();
+    unbaked = new ArrayList<SGNode>();
+    gather(this, modelNodes);
+
+    ArrayList<ArrayList<ModelNode>> groups = new ArrayList<ArrayList<ModelNode>>();
+    for (ModelNode node : modelNodes) {
+      ArrayList<ModelNode> group = null;
+      for (int i=0; i<groups.size() && group == null; i++) {
+        if (groups.get(i).get(0).model.sharesStateWith(node.model)) {
+          group = groups.get(i);
+        }
+      }
+      if (group == null) {
+        group = new ArrayList<ModelNode>();
+        groups.add(group);
+      }
+      group.add(node);
+    }
+
+    baked = new ArrayList<ModelNode>();
+    Mat4 identity = new Mat4(1);
+    for (ArrayList<ModelNode> group : groups) {
+      Model model = group.get(0).model.withMesh(gl, merge(gl, group));
+      ModelNode node = new ModelNode(name+" (baked)", model);
+      node.update(identity);
+      baked.add(node);
+    }
+  }
+
+  private void gather(SGNode node, ArrayList<ModelNode> modelNodes) {
+    for (int i=0; i<node.children.size(); i++) {
+      SGNode child = node.children.get(i);
+      if (child instanceof LightNode || child instanceof LODNode) {
+        unbaked.add(child);
+      }
+      else if (child instanceof ModelNode) {
+        modelNodes.add((ModelNode)child);
+        gather(child, modelNodes);
+      }
+      else {
+        gather(child, modelNodes);
+      }
+    }
+  }
+
+  public boolean isBaked() {
+    return baked != null;
+  }
+
+  /**
+   * @return The merged models' nodes, which draw in place of the original ModelNodes
+   */
+  public List<ModelNode> getBakedNodes() {
+    return baked;
+  }
+
+  /**
+   * @return The nodes below this one that still draw themselves
+   */
+  public List<SGNode> getUnbakedNodes() {
+    return unbaked;
+  }
+
+  // One world-space mesh holding every node's mesh
+  private static Mesh merge(GL3 gl, ArrayList<ModelNode> group) {
+    int vertexCount = 0, indexCount = 0;
+    for (ModelNode node : group) {
+      vertexCount += node.model.getMesh().getVertices().length;
+      indexCount += node.model.getMesh().getIndices().length;
+    }
+    float[] vertices = new float[vertexCount];
+    int[] indices = new int[indexCount];
+    int v = 0, i = 0;
+    Vec3 p = new Vec3();
+    Mat4 normalMatrix = new Mat4();
+    float[] positions = new float[0];
+    for (ModelNode node : group) {
+      Mesh mesh = node.model.getMesh();
+      float[] src = mesh.getVertices();
+      Mat4 world = node.worldTransform;
+      Mat4.transpose(Mat4.inverse(world, normalMatrix), normalMatrix);
+      int firstVertex = v/8;
+      // the positions go through Mat4Batch in one call, the normals need normalising anyway
+      int count = src.length/8;
+      if (positions.length < count*3) {
+        positions = new float[count*3];
+      }
+      for (int j=0, k=0; j<src.length; j+=8, k+=3) {
+        positions[k] = src[j];
+        positions[k+1] = src[j+1];
+        positions[k+2] = src[j+2];
+      }
+      Mat4Batch.transformPoints(world, positions, positions, count);
+      for (int j=0, k=0; j<src.length; j+=8, k+=3, v+=8) {
+        vertices[v] = positions[k];
+        vertices[v+1] = positions[k+1];
+        vertices[v+2] = positions[k+2];
+        normalMatrix.transformDirection(p.set(src[j+3], src[j+4], src[j+5]), p).normalize();
+        vertices[v+3] = p.x;
+        vertices[v+4] = p.y;
+        vertices[v+5] = p.z;
+        vertices[v+6] = src[j+6];
+        vertices[v+7] = src[j+7];
+      }
+      for (int index : mesh.getIndices()) {
+        indices[i++] = firstVertex+index;
+      }
+    }
+    return new Mesh(gl, vertices, indices);
+  }
+
+  public int collect(RenderQueue queue, Frustum frustum) {
+    if (baked == null) {
+      return super.collect(queue, frustum);
+    }
+    if (boundsRadius < 0) {
+      return 0;
+    }
+    if (!frustum.intersectsSphere(boundsCentre, boundsRadius)) {
+      return subtreeSize();
+    }
+    int culled = 0;
+    for (int i=0; i<baked.size(); i++) {
+      culled += baked.get(i).collect(queue, frustum);
+    }
+    for (int i=0; i<unbaked.size(); i++) {
+      culled += unbaked.get(i).collect(queue, frustum);
+    }
+    return culled;
+  }
+
+  public void draw(GL3 gl) {
+    if (baked == null) {
+      super.draw(gl);
+      return;
+    }
+    for (int i=0; i<baked.size(); i++) {
+      baked.get(i).draw(gl);
+    }
+    for (int i=0; i<unbaked.size(); i++) {
+      unbaked.get(i).draw(gl);
+    }
+  }
+
+  /**
+   * Frees the merged meshes. The textures belong to the original models.
+   */
+  public void dispose(GL3 gl) {
+    if (baked != null) {
+      for (int i=0; i<baked.size(); i++) {
+        baked.get(i).model.getMesh().dispose(gl);
+      }
+    }
+  }
+
+}
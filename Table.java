@@ -7,6 +7,8 @@ import com.jogamp.opengl.util.texture.*;
 
 import gmaths.Mat4;
 import gmaths.Mat4Transform;
+import gmaths.Quat;
+import gmaths.Scratch;
 import gmaths.Vec3;
 
 /**
@@ -26,6 +28,8 @@ public class Table {
 	private float eggRotateSpeedFactor = 0.4f;
 	private float tableHeight, eggHeight;
 	private TransformNode eggJumpTransform;
+	private StaticNode tableStatic;
+	private Quat eggSpin = new Quat();
 	private Shader eggShader;
 
 	private void loadTextures(GL3 gl) {
@@ -58,11 +62,11 @@ public class Table {
 		eggHeight = 3;
 
 		// Define our table info
-		Mesh cubeMesh = new Mesh(gl, Cube.vertices.clone(), Cube.indices.clone());
+		Mesh cubeMesh = MeshLibrary.get(gl, Cube.generate());
 		Material tableMaterial = new Material();
 
 		// Egg info
-		Mesh sphereMesh = new Mesh(gl, Sphere.vertices.clone(), Sphere.indices.clone());
+		Mesh sphereMesh = MeshLibrary.get(gl, Sphere.generate(30, 30));
 		Material eggMaterial = new Material(new Vec3(0.3f), new Vec3(0.7f), new Vec3(0.6f), 100);
 		eggShader = new Shader(gl, "shaders/tt_vs.glsl", "shaders/egg_fs.glsl");
 
@@ -72,6 +76,9 @@ public class Table {
 		legCube = new Model(gl, camera, worldLights, spotLights, multiShader, tableMaterial, new Mat4(1), cubeMesh, textures[1]);
 		eggSphere = new Model(gl, camera, worldLights, spotLights, eggShader, eggMaterial, new Mat4(1), sphereMesh, textures[2], textures[3]);
 
+		// Coarser eggs for when it is small on screen
+		Mesh[] coarseSpheres = new Mesh[] {MeshLibrary.get(gl, Sphere.generate(14, 14)), MeshLibrary.get(gl, Sphere.generate(8, 8))};
+
 		// ================== Transformations ====================
 
 		// Create root
@@ -80,6 +87,9 @@ public class Table {
 		// Create the top of our table & move it to the top
 		NameNode top = new NameNode("top");
 
+		// Everything but the egg stays put, so it can be baked into a few meshes
+		tableStatic = new StaticNode("table static");
+
 			// Make the surface of the table and move it above the leg heights
 			Mat4 m = Mat4.multiply(Mat4Transform.scale(topWidth,topHeight,topDepth), Mat4Transform.translate(0,0.5f,0));
 			m = Mat4.multiply(Mat4Transform.translate(0,legHeight,0), m);
@@ -142,21 +152,22 @@ public class Table {
 			eggJumpTransform = new TransformNode("Egg jump", new Mat4(1));
 			TransformNode eggMoveToTable = new TransformNode("Move egg onto table", Mat4Transform.translate(0,tableHeight,0));
 				TransformNode setupEgg = new TransformNode("Setup egg", Mat4.multiply(Mat4Transform.scale(eggHeight/1.4f,eggHeight,eggHeight/1.4f), Mat4Transform.translate(0,0.5f,0)));
-						ModelNode eggShape = new ModelNode("Sphere(Egg on top of table)", eggSphere);
+						LODNode eggShape = new LODNode("Sphere(Egg on top of table)", LODNode.levels(gl, eggSphere, coarseSpheres), LODNode.DEFAULT_MIN_SIZES);
 
 
 
 		// Add nodes hierarchy
 		tableRoot.addChild(top);
-				top.addChild(topTransform);
+			top.addChild(tableStatic);
+				tableStatic.addChild(topTransform);
 					topTransform.addChild(topShape);
 		// Add each leg from the array
 		for (NameNode legNode : legNodes) {
-			top.addChild(legNode);
+			tableStatic.addChild(legNode);
 		}
 
 		// Add the base for the egg to sit on
-		top.addChild(eggBase);
+		tableStatic.addChild(eggBase);
 			eggBase.addChild(baseTransform);
 			baseTransform.addChild(baseShape);
 
@@ -175,6 +186,14 @@ public class Table {
 		return tableRoot;
 	}
 
+	/**
+	 * Merge the parts of the table that never move,
+	 * call once the table is in its final place in the scene
+	 */
+	public void bake(GL3 gl) {
+		tableStatic.bake(gl);
+	}
+
 
 	public void makeEggJump(double elapsedTime) {
 
@@ -182,10 +201,13 @@ public class Table {
 		float jumpHeight = (float) ((eggHeight* eggJumpHeightFactor)*Math.abs(Math.sin(elapsedTime*eggJumpSpeedFactor)));
 		float rotateAngle = 360*(float)Math.sin(elapsedTime*eggRotateSpeedFactor);
 
-		// Apply the transformation
-		Mat4 transform = Mat4.multiply(Mat4Transform.rotateAroundY(rotateAngle), Mat4Transform.translate(0, jumpHeight,0));
+		// Apply the transformation (the jump is along the spin axis, so the order doesn't matter)
+		Scratch scratch = Scratch.get();
+		scratch.push();
+		Mat4 transform = Mat4Transform.compose(scratch.vec3().set(0, jumpHeight, 0), Quat.rotateAroundY(rotateAngle, eggSpin),
+				scratch.vec3().set(1, 1, 1), scratch.mat4());
 		eggJumpTransform.setTransform(transform);
-		eggJumpTransform.update();
+		scratch.pop();
 
 	}
 
@@ -193,5 +215,6 @@ public class Table {
 		tableCube.dispose(gl);
 		legCube.dispose(gl);
 		eggSphere.dispose(gl);
+		tableStatic.dispose(gl);
 	}
 }
\ No newline at end of file
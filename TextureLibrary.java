@@ -18,7 +18,7 @@ public final class TextureLibrary {
     try {
       File f = new File(filename);
       t = (Texture)TextureIO.newTexture(f, true);
-      t.bind(gl3);
+      GLState.get(gl3).bindTexture(gl3, t);
       t.setTexParameteri(gl3, GL3.GL_TEXTURE_WRAP_S, wrappingS);
       t.setTexParameteri(gl3, GL3.GL_TEXTURE_WRAP_T, wrappingT);
       t.setTexParameteri(gl3, GL3.GL_TEXTURE_MIN_FILTER, GL3.GL_LINEAR_MIPMAP_LINEAR);
@@ -0,0 +1,40 @@
+/**
+ * A torus of outer diameter 1 lying in the xz plane, centred on the origin.
+ */
+public final class Torus {
+
+  /**
+   * @param longitudes The number of points around the ring, the last one repeating the first
+   * @param sides The number of points around the tube, the last one repeating the first
+   * @param tubeRadius The radius of the tube, less than 0.25 so the ring has a hole
+   * @return The torus, shared with every other caller asking for the same shape
+   */
+  public static MeshData generate(int longitudes, int sides, float tubeRadius) {
+    MeshData.checkAtLeast("longitudes", longitudes, 3);
+    MeshData.checkAtLeast("sides", sides, 3);
+    if (tubeRadius <= 0 || tubeRadius >= 0.25f) {
+      throw new IllegalArgumentException("torus tube radius must be in (0, 0.25)");
+    }
+    return MeshData.cached("torus "+longitudes+" "+sides+" "+tubeRadius,
+        key -> new MeshData(key, createVertices(longitudes, sides, tubeRadius), MeshData.gridIndices(longitudes, sides)));
+  }
+
+  // rows go around the tube, starting on the outside and heading up
+  private static float[] createVertices(int longitudes, int sides, float tubeRadius) {
+    float[] vertices = new float[longitudes*sides*8];
+    float ringRadius = 0.5f-tubeRadius;
+    MeshData.forEachRow(sides, longitudes, j -> {
+      double b = Math.toRadians(360*(double)(j)/(sides-1));
+      float y = (float)Math.sin(b), out = (float)Math.cos(b);
+      for (int i = 0; i<longitudes; ++i) {
+        double a = Math.toRadians(360*(double)(i)/(longitudes-1));
+        float x = (float)Math.sin(a), z = (float)Math.cos(a);
+        float r = ringRadius+tubeRadius*out;
+        MeshData.put(vertices, j*longitudes+i, r*x, tubeRadius*y, r*z, out*x, y, out*z,
+            (float)(i)/(longitudes-1), (float)(j)/(sides-1));
+      }
+    });
+    return vertices;
+  }
+
+}
@@ -4,22 +4,40 @@ import com.jogamp.opengl.*;
 public class TransformNode extends SGNode {
 
   private Mat4 transform;
+  private Mat4 childTransform;  // worldTransform*transform, what the children see
+  private CompiledSceneGraph compiled;
+  private int compiledIndex;
 
   public TransformNode(String name, Mat4 t) {
     super(name);
     transform = new Mat4(t);
+    childTransform = new Mat4(t);
   }
   
   public void setTransform(Mat4 m) {
-    transform = new Mat4(m);
+    transform.set(m);
+    // a compiled graph tracks its own dirty range, and updateDirty() is not used on its tree
+    if (compiled != null) {
+      compiled.setLocal(compiledIndex, transform);
+    }
+    else {
+      markDirty();
+    }
+  }
+
+  public Mat4 getTransform() {
+    return transform;
+  }
+
+  void bind(CompiledSceneGraph graph, int index) {
+    compiled = graph;
+    compiledIndex = index;
   }
   
-  protected void update(Mat4 t) {
-    worldTransform = t;
-    t = Mat4.multiply(worldTransform, transform);
-    for (int i=0; i<children.size(); i++) {
-      children.get(i).update(t);
-    }   
+  protected Mat4 updateLocal(Mat4 t) {
+    worldTransform.set(t);
+    worldTransformChanged();
+    return Mat4.multiply(worldTransform, transform, childTransform);
   }
 
   public void print(int indent, boolean inFull) {
@@ -0,0 +1,88 @@
+import gmaths.*;
+
+/**
+ * A hierarchy over the triangles of a mesh, in model space, for raycasts.
+ * Mesh.getTriangleBVH() builds one per mesh when it is first needed.
+ * A raycast uses fields of the object, so only one thread can raycast at a time.
+ */
+public class TriangleBVH implements BoxTree.ItemTest {
+
+  private static final int LEAF_SIZE = 4;
+  private static final float EPSILON = 1e-7f;
+
+  private final float[] vertices;
+  private final int[] indices;
+  private final int stride;
+  private final BoxTree tree;
+  private final float[] hitT = new float[1];
+  private float ox, oy, oz, dx, dy, dz;
+
+  /**
+   * @param stride The number of floats per vertex, the first three being x,y,z
+   */
+  public TriangleBVH(float[] vertices, int[] indices, int stride) {
+    this.vertices = vertices;
+    this.indices = indices;
+    this.stride = stride;
+    int triangles = indices.length/3;
+    float[] bounds = new float[triangles*6];
+    for (int t=0; t<triangles; t++) {
+      for (int a=0; a<3; a++) {
+        float p0 = vertices[indices[t*3]*stride+a];
+        float p1 = vertices[indices[t*3+1]*stride+a];
+        float p2 = vertices[indices[t*3+2]*stride+a];
+        bounds[t*6+a] = Math.min(p0, Math.min(p1, p2));
+        bounds[t*6+3+a] = Math.max(p0, Math.max(p1, p2));
+      }
+    }
+    tree = new BoxTree(bounds, triangles, LEAF_SIZE);
+  }
+
+  /**
+   * Finds the nearest triangle along a ray. Triangles are hit from either side.
+   *
+   * @param origin The start of the ray, in model space
+   * @param dir The direction of the ray; distances are measured in multiples of it
+   * @param maxT Triangles further than this are ignored
+   * @param distance distance[0] gets the distance to the hit
+   * @return The index of the triangle hit (its first index is at 3 times this), or -1 for none
+   */
+  public int raycast(Vec3 origin, Vec3 dir, float maxT, float[] distance) {
+    ox = origin.x;
+    oy = origin.y;
+    oz = origin.z;
+    dx = dir.x;
+    dy = dir.y;
+    dz = dir.z;
+    int triangle = tree.raycast(ox, oy, oz, dx, dy, dz, maxT, this, hitT);
+    distance[0] = hitT[0];
+    return triangle;
+  }
+
+  // Moller-Trumbore
+  public float intersect(int triangle, float maxT) {
+    int i0 = indices[triangle*3]*stride, i1 = indices[triangle*3+1]*stride, i2 = indices[triangle*3+2]*stride;
+    float ax = vertices[i0], ay = vertices[i0+1], az = vertices[i0+2];
+    float e1x = vertices[i1]-ax, e1y = vertices[i1+1]-ay, e1z = vertices[i1+2]-az;
+    float e2x = vertices[i2]-ax, e2y = vertices[i2+1]-ay, e2z = vertices[i2+2]-az;
+    float px = dy*e2z - dz*e2y, py = dz*e2x - dx*e2z, pz = dx*e2y - dy*e2x;
+    float det = e1x*px + e1y*py + e1z*pz;
+    if (Math.abs(det) < EPSILON) {
+      return -1;   // the ray is parallel to the triangle
+    }
+    float inv = 1/det;
+    float sx = ox-ax, sy = oy-ay, sz = oz-az;
+    float u = (sx*px + sy*py + sz*pz)*inv;
+    if (u < 0 || u > 1) {
+      return -1;
+    }
+    float qx = sy*e1z - sz*e1y, qy = sz*e1x - sx*e1z, qz = sx*e1y - sy*e1x;
+    float v = (dx*qx + dy*qy + dz*qz)*inv;
+    if (v < 0 || u+v > 1) {
+      return -1;
+    }
+    float t = (e2x*qx + e2y*qy + e2z*qz)*inv;
+    return t >= 0 && t <= maxT ? t : -1;
+  }
+
+}
@@ -16,4 +16,11 @@ public final class TwoTriangles {
       0, 2, 3
   };
 
+  /**
+   * @return The square's data, shared with every other caller
+   */
+  public static MeshData generate() {
+    return MeshData.cached("two triangles", key -> new MeshData(key, vertices, indices));
+  }
+
 }
\ No newline at end of file
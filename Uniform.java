@@ -0,0 +1,96 @@
+import com.jogamp.opengl.*;
+
+/**
+ * A handle to a uniform of a linked shader, from Shader.getInt, getFloat, getVec2, getVec3
+ * or getMat4. The handle holds the uniform's location, so setting it does no lookup and no
+ * string work; get the handles once and keep them.
+ * <p>
+ * A uniform the program does not use, e.g. one the compiler removed, has location -1 and
+ * setting it does nothing, as in GL. Like Shader's setters, set() applies to the program in use.
+ */
+public abstract class Uniform {
+
+  private final String name;
+  protected final int location;
+
+  Uniform(String name, int location) {
+    this.name = name;
+    this.location = location;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getLocation() {
+    return location;
+  }
+
+  /**
+   * @return false if the program does not use the uniform
+   */
+  public boolean isActive() {
+    return location >= 0;
+  }
+
+  /**
+   * An int, bool or sampler uniform.
+   */
+  public static final class Int extends Uniform {
+    Int(String name, int location) {
+      super(name, location);
+    }
+
+    public void set(GL3 gl, int value) {
+      gl.glUniform1i(location, value);
+    }
+  }
+
+  public static final class Float extends Uniform {
+    Float(String name, int location) {
+      super(name, location);
+    }
+
+    public void set(GL3 gl, float value) {
+      gl.glUniform1f(location, value);
+    }
+  }
+
+  public static final class Vec2 extends Uniform {
+    Vec2(String name, int location) {
+      super(name, location);
+    }
+
+    public void set(GL3 gl, float x, float y) {
+      gl.glUniform2f(location, x, y);
+    }
+  }
+
+  public static final class Vec3 extends Uniform {
+    Vec3(String name, int location) {
+      super(name, location);
+    }
+
+    public void set(GL3 gl, gmaths.Vec3 v) {
+      gl.glUniform3f(location, v.x, v.y, v.z);
+    }
+
+    public void set(GL3 gl, float x, float y, float z) {
+      gl.glUniform3f(location, x, y, z);
+    }
+  }
+
+  public static final class Mat4 extends Uniform {
+    Mat4(String name, int location) {
+      super(name, location);
+    }
+
+    /**
+     * @param m The matrix in GLSL order, e.g. from Mat4.toFloatArrayForGLSL
+     */
+    public void set(GL3 gl, float[] m) {
+      gl.glUniformMatrix4fv(location, 1, false, m, 0);
+    }
+  }
+
+}
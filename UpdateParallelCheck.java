@@ -0,0 +1,132 @@
+import gmaths.*;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Checks that SGNode.updateParallel() gives exactly the world transforms update() does.
+ * The scenes in this program are far below SGNode.PARALLEL_THRESHOLD, so this generates
+ * two identical trees with subtrees above it two levels down, so tasks fork tasks, under a
+ * root that is not the identity. It updates one tree each way and compares
+ * every node's worldTransform value for value, bit for bit, along with its kind.
+ * It then moves a spread of transforms in both and compares again.
+ * <p>
+ * Run java UpdateParallelCheck; it needs no GL context. It prints what it compared,
+ * or throws IllegalStateException at the first difference.
+ */
+public class UpdateParallelCheck {
+
+  private static final int SUBTREES = 4;   // of the root, each with two of its own above the threshold
+  private static final int ROUNDS = 5;
+
+  public static void main(String[] args) {
+    long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+    ArrayList<SGNode> sequential = new ArrayList<SGNode>(), parallel = new ArrayList<SGNode>();
+    ArrayList<TransformNode> sequentialTransforms = new ArrayList<TransformNode>();
+    ArrayList<TransformNode> parallelTransforms = new ArrayList<TransformNode>();
+    SGNode sequentialRoot = generate(new Random(seed), sequential, sequentialTransforms);
+    SGNode parallelRoot = generate(new Random(seed), parallel, parallelTransforms);
+    int forked = 0;   // the subtrees updateParallel hands to other tasks
+    for (int i=1; i<parallel.size(); i++) {
+      if (parallel.get(i).subtreeSize() >= SGNode.PARALLEL_THRESHOLD) {
+        forked++;
+      }
+    }
+    if (forked < SUBTREES*3) {
+      throw new IllegalStateException("only "+forked+" subtrees reach PARALLEL_THRESHOLD");
+    }
+
+    Random moves = new Random(seed);
+    for (int round=0; round<ROUNDS; round++) {
+      if (round > 0) {
+        for (int i=moves.nextInt(7); i<sequentialTransforms.size(); i+=7) {
+          Mat4 m = transform(moves);
+          sequentialTransforms.get(i).setTransform(m);
+          parallelTransforms.get(i).setTransform(m);
+        }
+      }
+      sequentialRoot.update();
+      parallelRoot.updateParallel();
+      compare(sequential, parallel, round);
+    }
+    System.out.println("UpdateParallelCheck: "+sequential.size()+" nodes, "+forked+" subtrees of at least "
+        +SGNode.PARALLEL_THRESHOLD+", "+ROUNDS+" updates on "+java.util.concurrent.ForkJoinPool.getCommonPoolParallelism()
+        +" workers, identical");
+  }
+
+  // Random NameNodes and TransformNodes: the root, SUBTREES subtrees of it, and two above
+  // the threshold in each of those beside some smaller ones
+  private static SGNode generate(Random random, ArrayList<SGNode> nodes, ArrayList<TransformNode> transforms) {
+    TransformNode root = add(null, "root", random, nodes, transforms);
+    for (int i=0; i<SUBTREES; i++) {
+      TransformNode subtree = add(root, "subtree "+i, random, nodes, transforms);
+      for (int j=0; j<2; j++) {
+        TransformNode large = add(subtree, "large "+i+"/"+j, random, nodes, transforms);
+        while (large.subtreeSize() < 2*SGNode.PARALLEL_THRESHOLD) {
+          grow(large, 6, random, nodes, transforms);
+        }
+        grow(subtree, 4, random, nodes, transforms);
+      }
+    }
+    return root;
+  }
+
+  private static TransformNode add(SGNode parent, String name, Random random, ArrayList<SGNode> nodes,
+                                   ArrayList<TransformNode> transforms) {
+    TransformNode node = new TransformNode(name, transform(random));
+    nodes.add(node);
+    transforms.add(node);
+    if (parent != null) {
+      parent.addChild(node);
+    }
+    return node;
+  }
+
+  private static void grow(SGNode parent, int depth, Random random, ArrayList<SGNode> nodes, ArrayList<TransformNode> transforms) {
+    SGNode child;
+    if (random.nextInt(3) == 0) {
+      child = new NameNode("name "+nodes.size());
+    }
+    else {
+      TransformNode t = new TransformNode("transform "+nodes.size(), transform(random));
+      transforms.add(t);
+      child = t;
+    }
+    nodes.add(child);
+    parent.addChild(child);
+    if (depth > 0) {
+      int n = random.nextInt(4);
+      for (int i=0; i<n; i++) {
+        grow(child, depth-1, random, nodes, transforms);
+      }
+    }
+  }
+
+  // One of each kind Mat4Transform builds, so both paths take every multiply kernel
+  private static Mat4 transform(Random random) {
+    float a = random.nextFloat()*360, x = random.nextFloat()*4-2, y = random.nextFloat()*4-2;
+    switch (random.nextInt(5)) {
+      case 0: return Mat4Transform.translate(x, y, 0);
+      case 1: return Mat4Transform.scale(1+x*0.2f, 1+y*0.2f, 1);
+      case 2: return Mat4Transform.rotateAroundY(a);
+      case 3: return Mat4.multiply(Mat4Transform.translate(x, 0, y), Mat4Transform.rotateAroundZ(a));
+      default: return Mat4Transform.compose(new Vec3(x, y, 0), Quat.rotateAroundX(a), new Vec3(1, 1+x*0.2f, 1));
+    }
+  }
+
+  private static void compare(ArrayList<SGNode> sequential, ArrayList<SGNode> parallel, int round) {
+    for (int i=0; i<sequential.size(); i++) {
+      SGNode s = sequential.get(i), p = parallel.get(i);
+      boolean same = s.worldTransform.getKind() == p.worldTransform.getKind();
+      for (int r=0; r<4; r++) {
+        for (int c=0; c<4; c++) {
+          same &= Float.floatToIntBits(s.worldTransform.get(r, c)) == Float.floatToIntBits(p.worldTransform.get(r, c));
+        }
+      }
+      if (!same) {
+        throw new IllegalStateException("update "+round+": "+p.getPath()+" differs from the sequential update:\n"
+            +p.worldTransform+"\nshould be\n"+s.worldTransform);
+      }
+    }
+  }
+
+}
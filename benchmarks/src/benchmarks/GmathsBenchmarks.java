@@ -0,0 +1,128 @@
+package benchmarks;
+
+import gmaths.Mat4Batch;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.regex.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.*;
+
+/**
+ * Runs the gmaths benchmarks with the GC profiler and writes the results as JMH JSON.
+ * If a baseline JSON from an earlier run is given, each benchmark is compared against
+ * it and any that lost more than 10% throughput or allocate more per operation are listed.
+ *
+ * <pre>
+ *   java -cp out:jmh/* benchmarks.GmathsBenchmarks [results.json [baseline.json]] [jmh options]
+ * </pre>
+ *
+ * To make a new baseline, copy a results file over the baseline.
+ */
+public class GmathsBenchmarks {
+
+  private static final double THROUGHPUT_TOLERANCE = 0.10;
+  private static final double ALLOCATION_TOLERANCE = 8;   // bytes/op, i.e. one small object
+
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException, IOException {
+    List<String> jmhArgs = new ArrayList<>(Arrays.asList(args));
+    String results = "benchmarks/results/latest.json";
+    String baseline = null;
+    if (!jmhArgs.isEmpty() && jmhArgs.get(0).endsWith(".json")) {
+      results = jmhArgs.remove(0);
+    }
+    if (!jmhArgs.isEmpty() && jmhArgs.get(0).endsWith(".json")) {
+      baseline = jmhArgs.remove(0);
+    }
+    Path resultsPath = Paths.get(results);
+    if (resultsPath.getParent() != null) {
+      Files.createDirectories(resultsPath.getParent());
+    }
+
+    System.out.println("Mat4Batch kernel: "+Mat4Batch.kernelName());
+    Options options = new OptionsBuilder()
+        .parent(new CommandLineOptions(jmhArgs.toArray(new String[0])))
+        .include("benchmarks\\..*Benchmarks")
+        .addProfiler(GCProfiler.class)
+        .resultFormat(ResultFormatType.JSON)
+        .result(results)
+        .build();
+    new Runner(options).run();
+
+    if (baseline != null) {
+      int regressions = compare(read(Paths.get(baseline)), read(resultsPath));
+      System.exit(regressions == 0 ? 0 : 1);
+    }
+  }
+
+  /**
+   * Prints each benchmark in current next to its baseline score.
+   *
+   * @return The number of regressions
+   */
+  static int compare(Map<String, double[]> baseline, Map<String, double[]> current) {
+    int regressions = 0;
+    System.out.printf("%n%-60s %12s %12s %8s %10s %10s%n", "Benchmark", "base ops/us", "ops/us", "change", "base B/op", "B/op");
+    for (Map.Entry<String, double[]> e : current.entrySet()) {
+      double[] now = e.getValue();
+      double[] then = baseline.get(e.getKey());
+      if (then == null) {
+        System.out.printf("%-60s %12s %12.3f %8s %10s %10.1f%n", e.getKey(), "-", now[0], "new", "-", now[1]);
+        continue;
+      }
+      double change = (now[0]-then[0])/then[0];
+      boolean slower = change < -THROUGHPUT_TOLERANCE;
+      boolean allocates = now[1] > then[1]+ALLOCATION_TOLERANCE;
+      if (slower || allocates) {
+        regressions++;
+      }
+      System.out.printf("%-60s %12.3f %12.3f %+7.1f%% %10.1f %10.1f%s%n", e.getKey(), then[0], now[0], change*100,
+                        then[1], now[1], slower || allocates ? "  REGRESSION" : "");
+    }
+    System.out.println(regressions+" regression(s)");
+    return regressions;
+  }
+
+  private static final Pattern BENCHMARK = Pattern.compile("\"benchmark\"\\s*:\\s*\"([^\"]+)\"");
+  private static final Pattern PARAMS = Pattern.compile("\"params\"\\s*:\\s*\\{([^}]*)\\}");
+  private static final Pattern SCORE = Pattern.compile("\"primaryMetric\"\\s*:\\s*\\{\\s*\"score\"\\s*:\\s*([-0-9.eE]+|\"NaN\")");
+  private static final Pattern ALLOC = Pattern.compile("\"gc\\.alloc\\.rate\\.norm\"\\s*:\\s*\\{\\s*\"score\"\\s*:\\s*([-0-9.eE]+|\"NaN\")");
+
+  /**
+   * Reads a JMH JSON result file into benchmark name (with any params) -> {score, bytes/op}.
+   * Only the fields used here are picked out, which avoids a JSON library dependency.
+   */
+  static Map<String, double[]> read(Path file) throws IOException {
+    String json = new String(Files.readAllBytes(file), "UTF-8");
+    Map<String, double[]> results = new LinkedHashMap<>();
+    Matcher m = BENCHMARK.matcher(json);
+    List<Integer> starts = new ArrayList<>();
+    List<String> names = new ArrayList<>();
+    while (m.find()) {
+      starts.add(m.start());
+      names.add(m.group(1));
+    }
+    for (int i=0; i<starts.size(); ++i) {
+      String entry = json.substring(starts.get(i), i+1 < starts.size() ? starts.get(i+1) : json.length());
+      String name = names.get(i);
+      Matcher p = PARAMS.matcher(entry);
+      if (p.find()) {
+        name += p.group(1).replaceAll("[\"\\s]", "").replace(':', '=').replaceAll("^|,", ":");
+      }
+      results.put(name, new double[] {number(SCORE, entry), number(ALLOC, entry)});
+    }
+    return results;
+  }
+
+  private static double number(Pattern pattern, String entry) {
+    Matcher m = pattern.matcher(entry);
+    if (!m.find() || m.group(1).startsWith("\"")) {
+      return Double.NaN;
+    }
+    return Double.parseDouble(m.group(1));
+  }
+
+}
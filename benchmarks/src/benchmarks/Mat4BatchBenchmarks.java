@@ -0,0 +1,65 @@
+package benchmarks;
+
+import gmaths.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Mat4Batch against the equivalent loop of Mat4.multiply calls.
+ * The kernel in use (scalar or vector) is reported by Mat4Batch.kernelName().
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class Mat4BatchBenchmarks {
+
+  @Param({"100", "10000"})
+  public int count;
+
+  private float[] parents, locals, out, points, transformed;
+  private Mat4[] parentMats, localMats, outMats;
+  private Mat4 transform;
+
+  @Setup
+  public void setup() {
+    java.util.Random random = new java.util.Random(42);
+    parentMats = new Mat4[count];
+    localMats = new Mat4[count];
+    outMats = new Mat4[count];
+    for (int i=0; i<count; ++i) {
+      parentMats[i] = Mat4.multiply(Mat4Transform.translate(random.nextFloat(), 0, random.nextFloat()), Mat4Transform.rotateAroundY(random.nextFloat()*360));
+      localMats[i] = Mat4.multiply(Mat4Transform.scale(random.nextFloat()+0.5f, 1, 1), Mat4Transform.translate(0, 0.5f, 0));
+      outMats[i] = new Mat4(1);
+    }
+    parents = Mat4Batch.pack(parentMats, new float[count*16]);
+    locals = Mat4Batch.pack(localMats, new float[count*16]);
+    out = new float[count*16];
+    points = new float[count*3];
+    for (int i=0; i<points.length; ++i) {
+      points[i] = random.nextFloat();
+    }
+    transformed = new float[count*3];
+    transform = parentMats[0];
+  }
+
+  @Benchmark
+  public float[] multiplyAll() {
+    Mat4Batch.multiplyAll(parents, locals, out, count);
+    return out;
+  }
+
+  @Benchmark
+  public Mat4[] multiplyEach() {
+    for (int i=0; i<count; ++i) {
+      Mat4.multiply(parentMats[i], localMats[i], outMats[i]);
+    }
+    return outMats;
+  }
+
+  @Benchmark
+  public float[] transformPoints() {
+    Mat4Batch.transformPoints(transform, points, transformed);
+    return transformed;
+  }
+
+}
@@ -0,0 +1,110 @@
+package benchmarks;
+
+import gmaths.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Throughput and allocation of single Mat4 operations, for each kind of matrix
+ * that Mat4 dispatches on. The *Into variants use the destination-passing
+ * overloads, so with the GC profiler they should report close to 0 B/op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class Mat4Benchmarks {
+
+  private Mat4 translation, scale, rigid, affine, projective, dest;
+  private float[] glsl;
+  private Vec3 position, target, up;
+
+  @Setup
+  public void setup() {
+    translation = Mat4Transform.translate(1.5f, 2, -3);
+    scale = Mat4Transform.scale(0.4f, 3.7f, 0.4f);
+    rigid = Mat4.multiply(Mat4Transform.translate(4, 0, 0), Mat4Transform.rotateAroundY(180));
+    affine = Mat4.multiply(rigid, Mat4.multiply(scale, Mat4Transform.translate(0, 0.5f, 0)));
+    projective = Mat4.multiply(Mat4Transform.perspective(45, 1024/768f), affine);
+    dest = new Mat4(1);
+    glsl = new float[16];
+    position = new Vec3(0, 15, 30);
+    target = new Vec3(0, 5, 0);
+    up = new Vec3(0, 1, 0);
+  }
+
+  @Benchmark
+  public Mat4 multiplyTranslation() {
+    return Mat4.multiply(translation, affine);
+  }
+
+  @Benchmark
+  public Mat4 multiplyScale() {
+    return Mat4.multiply(scale, scale);
+  }
+
+  @Benchmark
+  public Mat4 multiplyAffine() {
+    return Mat4.multiply(rigid, affine);
+  }
+
+  @Benchmark
+  public Mat4 multiplyAffineInto() {
+    return Mat4.multiply(rigid, affine, dest);
+  }
+
+  @Benchmark
+  public Mat4 multiplyProjective() {
+    return Mat4.multiply(projective, affine);
+  }
+
+  @Benchmark
+  public Mat4 multiplyProjectiveInto() {
+    return Mat4.multiply(projective, affine, dest);
+  }
+
+  @Benchmark
+  public Mat4 inverseRigid() {
+    return Mat4.inverse(rigid);
+  }
+
+  @Benchmark
+  public Mat4 inverseAffine() {
+    return Mat4.inverse(affine);
+  }
+
+  @Benchmark
+  public Mat4 inverseProjective() {
+    return Mat4.inverse(projective);
+  }
+
+  @Benchmark
+  public Mat4 inverseProjectiveInto() {
+    return Mat4.inverse(projective, dest);
+  }
+
+  @Benchmark
+  public float[] toFloatArrayForGLSL() {
+    return affine.toFloatArrayForGLSL();
+  }
+
+  @Benchmark
+  public float[] toFloatArrayForGLSLInto() {
+    return affine.toFloatArrayForGLSL(glsl);
+  }
+
+  @Benchmark
+  public Mat4 lookAt() {
+    return Mat4Transform.lookAt(position, target, up);
+  }
+
+  @Benchmark
+  public Mat4 lookAtInto() {
+    return Mat4Transform.lookAt(position, target, up, dest);
+  }
+
+  @Benchmark
+  public Mat4 perspective() {
+    return Mat4Transform.perspective(45, 1024/768f);
+  }
+
+}
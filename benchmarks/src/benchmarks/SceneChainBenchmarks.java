@@ -0,0 +1,122 @@
+package benchmarks;
+
+import gmaths.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The chains of gmaths calls that the scene actually makes, copied from
+ * Lamp and Room construction, Camera.getViewMatrix and Model.render,
+ * so a regression shows up in the numbers that matter for a frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SceneChainBenchmarks {
+
+  private Vec3 position, front, target, up;
+  private Mat4 perspective, model, view, mvp;
+  private Quat spin;
+  private Vec3 jump, unitScale;
+
+  @Setup
+  public void setup() {
+    position = new Vec3(0, 15, 30);
+    front = Vec3.normalize(new Vec3(0, -10, -30));
+    target = new Vec3();
+    up = new Vec3(0, 1, 0);
+    perspective = Mat4Transform.perspective(45, 1024/768f);
+    model = Mat4.multiply(Mat4Transform.translate(0, 2, 0), Mat4Transform.scale(3, 0.2f, 3));
+    view = new Mat4(1);
+    mvp = new Mat4(1);
+    spin = new Quat();
+    jump = new Vec3();
+    unitScale = new Vec3(1);
+  }
+
+  // Lamp constructor, Size.MEDIUM: the scale x translate pair built for each part
+  @Benchmark
+  public void lampConstruction(Blackhole bh) {
+    float height = 9;
+    float[][] parts = {
+      {0.2f*height, 0.04f*height, 0.083f*height},    // base
+      {0.058f*height, 0.41f*height, 0.058f*height},  // arm
+      {0.1f*height, 0.1f*height, 0.1f*height},       // joint
+      {0.3f*height, 0.3f*height, 0.3f*height},       // shell
+      {0.13f*height, 0.05f*height, 0.05f*height},    // head
+      {0.033f*height, 0.033f*height, 0.033f*height}  // light
+    };
+    for (float[] p : parts) {
+      bh.consume(Mat4.multiply(Mat4Transform.scale(p[0], p[1], p[2]), Mat4Transform.translate(0, 0.5f, 0)));
+    }
+    bh.consume(Mat4Transform.translate(0, 0.04f*height/2, 0));
+    bh.consume(Mat4Transform.translate(0, 0.41f*height-(0.1f*height/2), 0));
+    bh.consume(Mat4Transform.rotateAroundZ(0));
+    bh.consume(Mat4.multiply(Mat4Transform.translate(4, 0, 0), Mat4Transform.rotateAroundY(180)));
+  }
+
+  // Room constructor: the floor, window and two side walls
+  @Benchmark
+  public void roomConstruction(Blackhole bh) {
+    float wallSize = 16f;
+    Mat4 mStart = Mat4Transform.scale(wallSize, 1f, wallSize);
+    Mat4 m = Mat4.multiply(Mat4Transform.rotateAroundX(90), mStart);
+    bh.consume(Mat4.multiply(Mat4Transform.translate(0, wallSize*0.5f, -wallSize*0.5f), m));
+    m = Mat4.multiply(Mat4Transform.rotateAroundY(90), mStart);
+    m = Mat4.multiply(Mat4Transform.rotateAroundZ(-90), m);
+    bh.consume(Mat4.multiply(Mat4Transform.translate(-wallSize*0.5f, wallSize*0.5f, 0), m));
+    m = Mat4.multiply(Mat4Transform.rotateAroundY(90), mStart);
+    m = Mat4.multiply(Mat4Transform.rotateAroundZ(90), m);
+    bh.consume(Mat4.multiply(Mat4Transform.translate(wallSize*0.5f, wallSize*0.5f, 0), m));
+  }
+
+  // Camera.getViewMatrix as it was: a new target and a new matrix per call
+  @Benchmark
+  public Mat4 cameraViewMatrix() {
+    Vec3 t = Vec3.add(position, front);
+    return Mat4Transform.lookAt(position, t, up);
+  }
+
+  // Camera.getViewMatrix as it is now
+  @Benchmark
+  public Mat4 cameraViewMatrixInto() {
+    Vec3.add(position, front, target);
+    return Mat4Transform.lookAt(position, target, up, view);
+  }
+
+  // Model.render: perspective x (view x model), then both uploads
+  @Benchmark
+  public void modelRenderMatrices(Blackhole bh) {
+    Mat4 v = Mat4Transform.lookAt(position, Vec3.add(position, front), up);
+    Mat4 m = Mat4.multiply(perspective, Mat4.multiply(v, model));
+    bh.consume(model.toFloatArrayForGLSL());
+    bh.consume(m.toFloatArrayForGLSL());
+  }
+
+  @Benchmark
+  public void modelRenderMatricesScratch(Blackhole bh) {
+    Scratch scratch = Scratch.get();
+    scratch.push();
+    Vec3.add(position, front, target);
+    Mat4 v = Mat4Transform.lookAt(position, target, up, view);
+    Mat4 m = Mat4.multiply(v, model, scratch.mat4());
+    Mat4.multiply(perspective, m, mvp);
+    float[] glsl = scratch.mat4Array();
+    bh.consume(model.toFloatArrayForGLSL(glsl));
+    bh.consume(mvp.toFloatArrayForGLSL(glsl));
+    scratch.pop();
+  }
+
+  // Table.makeEggJump: rotate x translate, then the fused builder
+  @Benchmark
+  public Mat4 eggJumpMultiply() {
+    return Mat4.multiply(Mat4Transform.rotateAroundY(137), Mat4Transform.translate(0, 0.6f, 0));
+  }
+
+  @Benchmark
+  public Mat4 eggJumpCompose() {
+    return Mat4Transform.compose(jump.set(0, 0.6f, 0), Quat.rotateAroundY(137, spin), unitScale, mvp);
+  }
+
+}
@@ -0,0 +1,74 @@
+package benchmarks;
+
+import gmaths.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Throughput and allocation of the Vec3 operations, allocating and destination-passing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class Vec3Benchmarks {
+
+  private Vec3 a, b, dest;
+
+  @Setup
+  public void setup() {
+    a = new Vec3(0.3f, -1.2f, 4);
+    b = new Vec3(0, 1, 0);
+    dest = new Vec3();
+  }
+
+  @Benchmark
+  public Vec3 add() {
+    return Vec3.add(a, b);
+  }
+
+  @Benchmark
+  public Vec3 addInto() {
+    return Vec3.add(a, b, dest);
+  }
+
+  @Benchmark
+  public Vec3 subtract() {
+    return Vec3.subtract(a, b);
+  }
+
+  @Benchmark
+  public Vec3 multiply() {
+    return Vec3.multiply(a, 0.2f);
+  }
+
+  @Benchmark
+  public Vec3 multiplyInto() {
+    return Vec3.multiply(a, 0.2f, dest);
+  }
+
+  @Benchmark
+  public Vec3 crossProduct() {
+    return Vec3.crossProduct(a, b);
+  }
+
+  @Benchmark
+  public Vec3 crossProductInto() {
+    return Vec3.crossProduct(a, b, dest);
+  }
+
+  @Benchmark
+  public Vec3 normalize() {
+    return Vec3.normalize(a);
+  }
+
+  @Benchmark
+  public Vec3 normalizeInto() {
+    return Vec3.normalize(a, dest);
+  }
+
+  @Benchmark
+  public float dotProduct() {
+    return Vec3.dotProduct(a, b);
+  }
+
+}
@@ -0,0 +1,65 @@
+package gmaths;
+
+/**
+ * A view frustum, held as six planes facing inwards: left, right, bottom, top, near, far.
+ * The planes are extracted from a combined projection x view matrix, so they are in world space.
+ * <pre>
+ *   frustum.set(Mat4.multiply(camera.getPerspectiveMatrix(), camera.getViewMatrix(), m));
+ * </pre>
+ */
+
+public final class Frustum {
+
+  private final float[] planes = new float[6*4];   // a,b,c,d with ax+by+cz+d >= 0 inside
+
+  public Frustum() {
+  }
+
+  public Frustum(Mat4 viewProjection) {
+    set(viewProjection);
+  }
+
+  /**
+   * Extracts the planes from a projection x view matrix.
+   *
+   * @param m The combined matrix, perspective x view
+   * @return  this
+   */
+  public Frustum set(Mat4 m) {
+    for (int i=0; i<3; ++i) {
+      setPlane(i*2, m, i, 1);     // row 3 + row i
+      setPlane(i*2+1, m, i, -1);  // row 3 - row i
+    }
+    return this;
+  }
+
+  private void setPlane(int plane, Mat4 m, int row, float sign) {
+    float a = m.get(3,0) + sign*m.get(row,0);
+    float b = m.get(3,1) + sign*m.get(row,1);
+    float c = m.get(3,2) + sign*m.get(row,2);
+    float d = m.get(3,3) + sign*m.get(row,3);
+    float length = (float)Math.sqrt(a*a + b*b + c*c);
+    planes[plane*4] = a/length;
+    planes[plane*4+1] = b/length;
+    planes[plane*4+2] = c/length;
+    planes[plane*4+3] = d/length;
+  }
+
+  /**
+   * @return  false if the sphere is completely outside the frustum. Spheres near a corner
+   *          may be reported as inside when they are not, which only costs a wasted draw.
+   */
+  public boolean intersectsSphere(float x, float y, float z, float radius) {
+    for (int i=0; i<planes.length; i+=4) {
+      if (planes[i]*x + planes[i+1]*y + planes[i+2]*z + planes[i+3] < -radius) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public boolean intersectsSphere(Vec3 centre, float radius) {
+    return intersectsSphere(centre.x, centre.y, centre.z, radius);
+  }
+
+} // end of Frustum class
@@ -1,161 +1,464 @@
 package gmaths;
 
-public class Mat4 {   // row column formulation
+public class Mat4 {   // row column formulation, stored column by column
+
+  // What the matrix is known to hold, from most to least special. Mat4Transform
+  // tags the matrices it builds, multiply and inverse carry the tag through, and
+  // set(r,c,f) widens it, so a tag is never narrower than the values.
+  public static final int IDENTITY = 0;
+  public static final int TRANSLATION = 1;
+  public static final int SCALE = 2;
+  public static final int RIGID = 3;       // rotation followed by translation
+  public static final int AFFINE = 4;      // bottom row is 0,0,0,1
+  public static final int PROJECTIVE = 5;  // anything
+
+  // values[c*4+r] holds row r, column c, which is the layout GLSL expects
+  private float[] values;
+  private int kind;
 
-  private float[][] values;
-  
   public Mat4() {
     this(0);
   }
-  
+
   public Mat4(float f) {
-    values = new float[4][4];
-    makeZero();
+    values = new float[16];
     for (int i=0; i<4; ++i) {
-      values[i][i] = f;
+      values[i*4+i] = f;
     }
+    kind = (f == 1) ? IDENTITY : PROJECTIVE;
+  }
+
+  public int getKind() {
+    return kind;
+  }
+
+  // Only for builders that know what they have written, e.g. Mat4Transform
+  void setKind(int kind) {
+    this.kind = kind;
+  }
+
+  /**
+   * @return The kind of a x b, for code that multiplies packed matrices and keeps their kinds alongside
+   */
+  public static int multiplyKind(int a, int b) {
+    if (a == IDENTITY) return b;
+    if (b == IDENTITY) return a;
+    if (a == b && a <= RIGID) return a;
+    if ((a == TRANSLATION || a == RIGID) && (b == TRANSLATION || b == RIGID)) return RIGID;
+    if (a <= AFFINE && b <= AFFINE) return AFFINE;
+    return PROJECTIVE;
   }
 
   public Vec3 getXDirection(){
-    return new Vec3(values[0][0], values[1][0], values[2][0]);
+    return getXDirection(new Vec3());
+  }
+
+  public Vec3 getXDirection(Vec3 dest){
+    dest.x = values[0];
+    dest.y = values[1];
+    dest.z = values[2];
+    return dest;
   }
 
   public Vec3 getPosition() {
-    return new Vec3(values[0][3], values[1][3], values[2][3]);
+    return getPosition(new Vec3());
+  }
+
+  public Vec3 getPosition(Vec3 dest) {
+    dest.x = values[12];
+    dest.y = values[13];
+    dest.z = values[14];
+    return dest;
+  }
+
+  /**
+   * Transforms a point, treating it as (x,y,z,1). The w component is dropped, so the matrix should be affine.
+   *
+   * @param p The point
+   * @param dest The vector to write the result to. It may be p.
+   * @return  dest
+   */
+  public Vec3 transformPoint(Vec3 p, Vec3 dest) {
+    float x = p.x, y = p.y, z = p.z;
+    return dest.set(values[0]*x + values[4]*y + values[8]*z + values[12],
+                    values[1]*x + values[5]*y + values[9]*z + values[13],
+                    values[2]*x + values[6]*y + values[10]*z + values[14]);
+  }
+
+  /**
+   * Transforms a direction, treating it as (x,y,z,0), so the translation is ignored.
+   *
+   * @param v The direction
+   * @param dest The vector to write the result to. It may be v.
+   * @return  dest
+   */
+  public Vec3 transformDirection(Vec3 v, Vec3 dest) {
+    float x = v.x, y = v.y, z = v.z;
+    return dest.set(values[0]*x + values[4]*y + values[8]*z,
+                    values[1]*x + values[5]*y + values[9]*z,
+                    values[2]*x + values[6]*y + values[10]*z);
+  }
+
+  /**
+   * Transforms an axis-aligned box, giving the smallest axis-aligned box around the result.
+   * Each output axis takes its range from the input ranges weighted by the matrix (Arvo's method),
+   * so the matrix should be affine.
+   *
+   * @param min The box's corner with the smallest x, y and z
+   * @param max The box's corner with the largest x, y and z
+   * @param destMin The vector to write the new min to. It may be min.
+   * @param destMax The vector to write the new max to. It may be max.
+   */
+  public void transformBox(Vec3 min, Vec3 max, Vec3 destMin, Vec3 destMax) {
+    float cx = (min.x+max.x)*0.5f, cy = (min.y+max.y)*0.5f, cz = (min.z+max.z)*0.5f;
+    float ex = (max.x-min.x)*0.5f, ey = (max.y-min.y)*0.5f, ez = (max.z-min.z)*0.5f;
+    float x = values[0]*cx + values[4]*cy + values[8]*cz + values[12];
+    float y = values[1]*cx + values[5]*cy + values[9]*cz + values[13];
+    float z = values[2]*cx + values[6]*cy + values[10]*cz + values[14];
+    float rx = Math.abs(values[0])*ex + Math.abs(values[4])*ey + Math.abs(values[8])*ez;
+    float ry = Math.abs(values[1])*ex + Math.abs(values[5])*ey + Math.abs(values[9])*ez;
+    float rz = Math.abs(values[2])*ex + Math.abs(values[6])*ey + Math.abs(values[10])*ez;
+    destMin.set(x-rx, y-ry, z-rz);
+    destMax.set(x+rx, y+ry, z+rz);
+  }
+
+  /**
+   * The largest factor by which the matrix scales along its x, y or z axis, e.g. to scale a bounding radius.
+   * This is exact for rotations combined with (possibly non-uniform) scales, which is what Mat4Transform builds.
+   */
+  public float getMaxScale() {
+    float x = values[0]*values[0] + values[1]*values[1] + values[2]*values[2];
+    float y = values[4]*values[4] + values[5]*values[5] + values[6]*values[6];
+    float z = values[8]*values[8] + values[9]*values[9] + values[10]*values[10];
+    return (float)Math.sqrt(Math.max(x, Math.max(y, z)));
   }
 
   public Mat4(Mat4 m) {
-    this.values = new float[4][4];
-    for (int i=0; i<4; ++i) {
-      for (int j=0; j<4; ++j) {
-        this.values[i][j] = m.values[i][j];
-      }
-    }
+    this.values = m.values.clone();
+    this.kind = m.kind;
   }
-  
+
   public void set(int r, int c, float f) {
-    values[r][c] = f;
+    values[c*4+r] = f;
+    if (r == 3) kind = PROJECTIVE;
+    else if (kind < AFFINE) kind = AFFINE;
   }
-  
-  private void makeZero() {
-    for (int i=0; i<4; ++i) {
-      for (int j=0; j<4; ++j) {
-        values[i][j] = 0;
-      }
+
+  public float get(int r, int c) {
+    return values[c*4+r];
+  }
+
+  public Mat4 set(Mat4 m) {
+    System.arraycopy(m.values, 0, values, 0, 16);
+    kind = m.kind;
+    return this;
+  }
+
+  // Reads 16 column-major values, e.g. one matrix of a Mat4Batch array
+  public Mat4 set(float[] src, int offset) {
+    System.arraycopy(src, offset, values, 0, 16);
+    boolean affine = (values[3] == 0 && values[7] == 0 && values[11] == 0 && values[15] == 1);
+    kind = affine ? AFFINE : PROJECTIVE;
+    return this;
+  }
+
+  // As above, for callers that kept the values' kind, which must be no narrower than the values
+  public Mat4 set(float[] src, int offset, int kind) {
+    System.arraycopy(src, offset, values, 0, 16);
+    this.kind = kind;
+    return this;
+  }
+
+  public Mat4 setIdentity() {
+    for (int k=0; k<16; ++k) {
+      values[k] = (k%5==0) ? 1 : 0;
+    }
+    kind = IDENTITY;
+    return this;
+  }
+
+  public Mat4 setZero() {
+    for (int k=0; k<16; ++k) {
+      values[k] = 0;
     }
+    kind = PROJECTIVE;
+    return this;
   }
-  
+
   public void transpose() {
     for (int i=0; i<4; ++i) {
-      for (int j=i; j<4; ++j) {
-        float t = values[i][j];
-        values[i][j] = values[j][i];
-        values[j][i] = t;
+      for (int j=i+1; j<4; ++j) {
+        float t = values[j*4+i];
+        values[j*4+i] = values[i*4+j];
+        values[i*4+j] = t;
       }
     }
+    // identity and scale matrices are symmetric; the others have their offsets in the bottom row now
+    if (kind != IDENTITY && kind != SCALE) kind = PROJECTIVE;
   }
-    
+
   public static Mat4 transpose(Mat4 m) {
-    Mat4 a = new Mat4(m);
-    for (int i=0; i<4; ++i) {
-      for (int j=i; j<4; ++j) {
-        float t = a.values[i][j];
-        a.values[i][j] = a.values[j][i];
-        a.values[j][i] = t;
-      }
-    }
-    return a;
+    return transpose(m, new Mat4());
+  }
+
+  public static Mat4 transpose(Mat4 m, Mat4 dest) {
+    dest.set(m);
+    dest.transpose();
+    return dest;
   }
 
   public static Mat4 multiply(Mat4 a, Mat4 b) {
-    Mat4 result = new Mat4();
-    for (int i=0; i<4; ++i) {
-      for (int j=0; j<4; ++j) {
-        for (int k=0; k<4; ++k) {
-          result.values[i][j] += a.values[i][k]*b.values[k][j];
-        }
-      }
+    return multiply(a, b, new Mat4());
+  }
+
+  // dest may be a or b
+  public static Mat4 multiply(Mat4 a, Mat4 b, Mat4 dest) {
+    int kind = multiplyKind(a.kind, b.kind);
+    if (a.kind == IDENTITY) {
+      dest.set(b);
+    }
+    else if (b.kind == IDENTITY) {
+      dest.set(a);
+    }
+    else if (a.kind == TRANSLATION && b.kind <= AFFINE) {
+      multiplyTranslation(a.values, b.values, dest.values);
+    }
+    else if (a.kind == SCALE && b.kind == SCALE) {
+      multiplyScale(a.values, b.values, dest.values);
+    }
+    else if (kind <= AFFINE) {
+      multiplyAffine(a.values, b.values, dest.values);
+    }
+    else {
+      multiplyGeneral(a.values, b.values, dest.values);
+    }
+    dest.kind = kind;
+    return dest;
+  }
+
+  // a is a pure translation, b is affine: b with a's offset added
+  private static void multiplyTranslation(float[] av, float[] bv, float[] r) {
+    float tx = av[12], ty = av[13], tz = av[14];
+    if (r != bv) System.arraycopy(bv, 0, r, 0, 12);
+    r[12] = bv[12] + tx;
+    r[13] = bv[13] + ty;
+    r[14] = bv[14] + tz;
+    r[15] = 1;
+  }
+
+  private static void multiplyScale(float[] av, float[] bv, float[] r) {
+    float sx = av[0]*bv[0], sy = av[5]*bv[5], sz = av[10]*bv[10];
+    for (int k=0; k<16; ++k) {
+      r[k] = 0;
+    }
+    r[0] = sx;
+    r[5] = sy;
+    r[10] = sz;
+    r[15] = 1;
+  }
+
+  // Both bottom rows are 0,0,0,1, so only the top three rows need computing
+  private static void multiplyAffine(float[] av, float[] bv, float[] r) {
+    float a00 = av[0], a10 = av[1], a20 = av[2];
+    float a01 = av[4], a11 = av[5], a21 = av[6];
+    float a02 = av[8], a12 = av[9], a22 = av[10];
+    float a03 = av[12], a13 = av[13], a23 = av[14];
+    for (int j=0; j<12; j+=4) {
+      float b0 = bv[j], b1 = bv[j+1], b2 = bv[j+2];
+      r[j]   = a00*b0 + a01*b1 + a02*b2;
+      r[j+1] = a10*b0 + a11*b1 + a12*b2;
+      r[j+2] = a20*b0 + a21*b1 + a22*b2;
+      r[j+3] = 0;
+    }
+    float b0 = bv[12], b1 = bv[13], b2 = bv[14];
+    r[12] = a00*b0 + a01*b1 + a02*b2 + a03;
+    r[13] = a10*b0 + a11*b1 + a12*b2 + a13;
+    r[14] = a20*b0 + a21*b1 + a22*b2 + a23;
+    r[15] = 1;
+  }
+
+  private static void multiplyGeneral(float[] av, float[] bv, float[] r) {
+    float a00 = av[0], a10 = av[1], a20 = av[2],  a30 = av[3];
+    float a01 = av[4], a11 = av[5], a21 = av[6],  a31 = av[7];
+    float a02 = av[8], a12 = av[9], a22 = av[10], a32 = av[11];
+    float a03 = av[12], a13 = av[13], a23 = av[14], a33 = av[15];
+    for (int j=0; j<16; j+=4) {
+      float b0 = bv[j], b1 = bv[j+1], b2 = bv[j+2], b3 = bv[j+3];
+      r[j]   = a00*b0 + a01*b1 + a02*b2 + a03*b3;
+      r[j+1] = a10*b0 + a11*b1 + a12*b2 + a13*b3;
+      r[j+2] = a20*b0 + a21*b1 + a22*b2 + a23*b3;
+      r[j+3] = a30*b0 + a31*b1 + a32*b2 + a33*b3;
     }
-    return result;
   }
 
-  // See https://www.geometrictools.com/Documentation/LaplaceExpansionTheorem.pdf
   public static Mat4 inverse(Mat4 m) {
-    float s0 = m.values[0][0] * m.values[1][1] - m.values[1][0] * m.values[0][1];
-    float s1 = m.values[0][0] * m.values[1][2] - m.values[1][0] * m.values[0][2];
-    float s2 = m.values[0][0] * m.values[1][3] - m.values[1][0] * m.values[0][3];
-    float s3 = m.values[0][1] * m.values[1][2] - m.values[1][1] * m.values[0][2];
-    float s4 = m.values[0][1] * m.values[1][3] - m.values[1][1] * m.values[0][3];
-    float s5 = m.values[0][2] * m.values[1][3] - m.values[1][2] * m.values[0][3];
-
-    float c5 = m.values[2][2] * m.values[3][3] - m.values[3][2] * m.values[2][3];
-    float c4 = m.values[2][1] * m.values[3][3] - m.values[3][1] * m.values[2][3];
-    float c3 = m.values[2][1] * m.values[3][2] - m.values[3][1] * m.values[2][2];
-    float c2 = m.values[2][0] * m.values[3][3] - m.values[3][0] * m.values[2][3];
-    float c1 = m.values[2][0] * m.values[3][2] - m.values[3][0] * m.values[2][2];
-    float c0 = m.values[2][0] * m.values[3][1] - m.values[3][0] * m.values[2][1];
+    return inverse(m, new Mat4());
+  }
+
+  // dest may be m
+  public static Mat4 inverse(Mat4 m, Mat4 dest) {
+    switch (m.kind) {
+      case IDENTITY : dest.setIdentity(); break;
+      case TRANSLATION : inverseTranslation(m.values, dest.values); break;
+      case SCALE : inverseScale(m.values, dest.values); break;
+      case RIGID : inverseRigid(m.values, dest.values); break;
+      case AFFINE : inverseAffine(m.values, dest.values); break;
+      default : inverseGeneral(m.values, dest.values); break;
+    }
+    dest.kind = m.kind;
+    return dest;
+  }
+
+  private static void inverseTranslation(float[] v, float[] r) {
+    float tx = v[12], ty = v[13], tz = v[14];
+    if (r != v) System.arraycopy(v, 0, r, 0, 12);
+    r[12] = -tx;
+    r[13] = -ty;
+    r[14] = -tz;
+    r[15] = 1;
+  }
+
+  private static void inverseScale(float[] v, float[] r) {
+    float sx = 1/v[0], sy = 1/v[5], sz = 1/v[10];
+    for (int k=0; k<16; ++k) {
+      r[k] = 0;
+    }
+    r[0] = sx;
+    r[5] = sy;
+    r[10] = sz;
+    r[15] = 1;
+  }
+
+  // The rotation part is orthonormal, so its inverse is its transpose
+  private static void inverseRigid(float[] v, float[] r) {
+    float m00 = v[0], m10 = v[1], m20 = v[2];
+    float m01 = v[4], m11 = v[5], m21 = v[6];
+    float m02 = v[8], m12 = v[9], m22 = v[10];
+    float tx = v[12], ty = v[13], tz = v[14];
+    r[0] = m00;  r[4] = m10;  r[8]  = m20;
+    r[1] = m01;  r[5] = m11;  r[9]  = m21;
+    r[2] = m02;  r[6] = m12;  r[10] = m22;
+    r[3] = 0;    r[7] = 0;    r[11] = 0;
+    r[12] = -(m00*tx + m10*ty + m20*tz);
+    r[13] = -(m01*tx + m11*ty + m21*tz);
+    r[14] = -(m02*tx + m12*ty + m22*tz);
+    r[15] = 1;
+  }
+
+  // Inverse of the upper 3x3 by cofactors, then the translation is carried through it
+  private static void inverseAffine(float[] v, float[] r) {
+    float m00 = v[0], m10 = v[1], m20 = v[2];
+    float m01 = v[4], m11 = v[5], m21 = v[6];
+    float m02 = v[8], m12 = v[9], m22 = v[10];
+    float tx = v[12], ty = v[13], tz = v[14];
+
+    float c00 = m11*m22 - m12*m21;
+    float c01 = m12*m20 - m10*m22;
+    float c02 = m10*m21 - m11*m20;
 
     // Should check for 0 determinant
-    float invdet = 1.0f / (s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0);
+    float invdet = 1.0f / (m00*c00 + m01*c01 + m02*c02);
+
+    float i00 = c00*invdet;
+    float i01 = (m02*m21 - m01*m22)*invdet;
+    float i02 = (m01*m12 - m02*m11)*invdet;
+    float i10 = c01*invdet;
+    float i11 = (m00*m22 - m02*m20)*invdet;
+    float i12 = (m02*m10 - m00*m12)*invdet;
+    float i20 = c02*invdet;
+    float i21 = (m01*m20 - m00*m21)*invdet;
+    float i22 = (m00*m11 - m01*m10)*invdet;
 
-    Mat4 b = new Mat4();
+    r[0] = i00;  r[4] = i01;  r[8]  = i02;
+    r[1] = i10;  r[5] = i11;  r[9]  = i12;
+    r[2] = i20;  r[6] = i21;  r[10] = i22;
+    r[3] = 0;    r[7] = 0;    r[11] = 0;
+    r[12] = -(i00*tx + i01*ty + i02*tz);
+    r[13] = -(i10*tx + i11*ty + i12*tz);
+    r[14] = -(i20*tx + i21*ty + i22*tz);
+    r[15] = 1;
+  }
+
+  // See https://www.geometrictools.com/Documentation/LaplaceExpansionTheorem.pdf
+  private static void inverseGeneral(float[] v, float[] r) {
+    float m00 = v[0], m10 = v[1], m20 = v[2],  m30 = v[3];
+    float m01 = v[4], m11 = v[5], m21 = v[6],  m31 = v[7];
+    float m02 = v[8], m12 = v[9], m22 = v[10], m32 = v[11];
+    float m03 = v[12], m13 = v[13], m23 = v[14], m33 = v[15];
+
+    float s0 = m00 * m11 - m10 * m01;
+    float s1 = m00 * m12 - m10 * m02;
+    float s2 = m00 * m13 - m10 * m03;
+    float s3 = m01 * m12 - m11 * m02;
+    float s4 = m01 * m13 - m11 * m03;
+    float s5 = m02 * m13 - m12 * m03;
+
+    float c5 = m22 * m33 - m32 * m23;
+    float c4 = m21 * m33 - m31 * m23;
+    float c3 = m21 * m32 - m31 * m22;
+    float c2 = m20 * m33 - m30 * m23;
+    float c1 = m20 * m32 - m30 * m22;
+    float c0 = m20 * m31 - m30 * m21;
+
+    // Should check for 0 determinant
+    float invdet = 1.0f / (s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0);
 
-    b.values[0][0] = ( m.values[1][1] * c5 - m.values[1][2] * c4 + m.values[1][3] * c3) * invdet;
-    b.values[0][1] = (-m.values[0][1] * c5 + m.values[0][2] * c4 - m.values[0][3] * c3) * invdet;
-    b.values[0][2] = ( m.values[3][1] * s5 - m.values[3][2] * s4 + m.values[3][3] * s3) * invdet;
-    b.values[0][3] = (-m.values[2][1] * s5 + m.values[2][2] * s4 - m.values[2][3] * s3) * invdet;
 
-    b.values[1][0] = (-m.values[1][0] * c5 + m.values[1][2] * c2 - m.values[1][3] * c1) * invdet;
-    b.values[1][1] = ( m.values[0][0] * c5 - m.values[0][2] * c2 + m.values[0][3] * c1) * invdet;
-    b.values[1][2] = (-m.values[3][0] * s5 + m.values[3][2] * s2 - m.values[3][3] * s1) * invdet;
-    b.values[1][3] = ( m.values[2][0] * s5 - m.values[2][2] * s2 + m.values[2][3] * s1) * invdet;
+    r[0]  = ( m11 * c5 - m12 * c4 + m13 * c3) * invdet;
+    r[4]  = (-m01 * c5 + m02 * c4 - m03 * c3) * invdet;
+    r[8]  = ( m31 * s5 - m32 * s4 + m33 * s3) * invdet;
+    r[12] = (-m21 * s5 + m22 * s4 - m23 * s3) * invdet;
 
-    b.values[2][0] = ( m.values[1][0] * c4 - m.values[1][1] * c2 + m.values[1][3] * c0) * invdet;
-    b.values[2][1] = (-m.values[0][0] * c4 + m.values[0][1] * c2 - m.values[0][3] * c0) * invdet;
-    b.values[2][2] = ( m.values[3][0] * s4 - m.values[3][1] * s2 + m.values[3][3] * s0) * invdet;
-    b.values[2][3] = (-m.values[2][0] * s4 + m.values[2][1] * s2 - m.values[2][3] * s0) * invdet;
+    r[1]  = (-m10 * c5 + m12 * c2 - m13 * c1) * invdet;
+    r[5]  = ( m00 * c5 - m02 * c2 + m03 * c1) * invdet;
+    r[9]  = (-m30 * s5 + m32 * s2 - m33 * s1) * invdet;
+    r[13] = ( m20 * s5 - m22 * s2 + m23 * s1) * invdet;
 
-    b.values[3][0] = (-m.values[1][0] * c3 + m.values[1][1] * c1 - m.values[1][2] * c0) * invdet;
-    b.values[3][1] = ( m.values[0][0] * c3 - m.values[0][1] * c1 + m.values[0][2] * c0) * invdet;
-    b.values[3][2] = (-m.values[3][0] * s3 + m.values[3][1] * s1 - m.values[3][2] * s0) * invdet;
-    b.values[3][3] = ( m.values[2][0] * s3 - m.values[2][1] * s1 + m.values[2][2] * s0) * invdet;
+    r[2]  = ( m10 * c4 - m11 * c2 + m13 * c0) * invdet;
+    r[6]  = (-m00 * c4 + m01 * c2 - m03 * c0) * invdet;
+    r[10] = ( m30 * s4 - m31 * s2 + m33 * s0) * invdet;
+    r[14] = (-m20 * s4 + m21 * s2 - m23 * s0) * invdet;
 
-    return b; 
+    r[3]  = (-m10 * c3 + m11 * c1 - m12 * c0) * invdet;
+    r[7]  = ( m00 * c3 - m01 * c1 + m02 * c0) * invdet;
+    r[11] = (-m30 * s3 + m31 * s1 - m32 * s0) * invdet;
+    r[15] = ( m20 * s3 - m21 * s1 + m22 * s0) * invdet;
   }
-  
+
   public float[] toFloatArrayForGLSL() {  // col by row
-    float[] f = new float[16];
-    for (int j=0; j<4; ++j) {
-      for (int i=0; i<4; ++i) {
-        f[j*4+i] = values[i][j];
-      }
-    }
-    return f;
+    return values.clone();
   }
-  
+
+  public float[] toFloatArrayForGLSL(float[] dest) {  // col by row
+    return toFloatArrayForGLSL(dest, 0);
+  }
+
+  public float[] toFloatArrayForGLSL(float[] dest, int offset) {  // col by row
+    System.arraycopy(values, 0, dest, offset, 16);
+    return dest;
+  }
+
   public String asFloatArrayForGLSL() {  // col by row
     String s = "{";
-    for (int j=0; j<4; ++j) {
-      for (int i=0; i<4; ++i) {
-        s += String.format("%.2f",values[i][j]);
-        if (!(j==3 && i==3)) s+=",";
-      }
+    for (int k=0; k<16; ++k) {
+      s += String.format("%.2f",values[k]);
+      if (k<15) s+=",";
     }
     return s;
   }
-  
+
   public String toString() {
     String s = "{";
     for (int i=0; i<4; ++i) {
       s += (i==0) ? "{" : " {";
       for (int j=0; j<4; ++j) {
-        s += String.format("%.2f",values[i][j]);  
+        s += String.format("%.2f",values[j*4+i]);
         if (j<3) s += ", ";
       }
       s += (i==3) ? "}" : "},\n";
-    } 
+    }
     s += "}";
     return s;
   }
-  
+
 } // end of Mat4 class
\ No newline at end of file
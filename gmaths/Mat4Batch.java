@@ -0,0 +1,137 @@
+package gmaths;
+
+/**
+ * A static class for running matrix operations over many matrices or points at once.
+ * Matrices are packed 16 floats each, column by column, i.e. the layout of
+ * Mat4.toFloatArrayForGLSL(float[], int), so matrix i starts at index i*16.
+ * Points are packed x,y,z, so point i starts at index i*3.
+ * <p>
+ * The work is done by a scalar kernel that runs on Java 8. On JDK 17+ a kernel
+ * built on the jdk.incubator.vector API (java17/gmaths/Mat4BatchVector.java) is
+ * used instead when it is on the class path and the JVM was started with
+ * --add-modules jdk.incubator.vector. Run with -Dgmaths.batch.scalar=true to
+ * force the scalar kernel.
+ */
+
+public final class Mat4Batch {
+
+  interface Kernel {
+    void multiplyAll(float[] a, float[] b, float[] out, int count);
+    void transformPoints(float[] m, float[] xyz, float[] out, int count);
+  }
+
+  private static final Kernel KERNEL = loadKernel();
+
+  private Mat4Batch() {
+  }
+
+  private static Kernel loadKernel() {
+    if (!Boolean.getBoolean("gmaths.batch.scalar")) {
+      try {
+        return (Kernel)Class.forName("gmaths.Mat4BatchVector").getDeclaredConstructor().newInstance();
+      }
+      catch (ReflectiveOperationException | LinkageError e) {
+        // Not built for this JDK, or the vector module is not available
+      }
+    }
+    return new ScalarKernel();
+  }
+
+  /**
+   * @return The name of the kernel in use, e.g. for benchmark reports
+   */
+  public static String kernelName() {
+    return KERNEL.getClass().getSimpleName();
+  }
+
+  /**
+   * Multiplies matrices pairwise: out[i] = parents[i] x locals[i], for i in 0..count-1.
+   * out may be parents or locals.
+   *
+   * @param parents The left-hand matrices
+   * @param locals The right-hand matrices
+   * @param out The array to write the products to
+   * @param count The number of matrices
+   */
+  public static void multiplyAll(float[] parents, float[] locals, float[] out, int count) {
+    KERNEL.multiplyAll(parents, locals, out, count);
+  }
+
+  /**
+   * Multiplies a single pair of packed matrices: out = a x b. out may overlap a or b.
+   *
+   * @param a The array holding the left-hand matrix
+   * @param aOffset The index of the left-hand matrix's first value
+   * @param b The array holding the right-hand matrix
+   * @param bOffset The index of the right-hand matrix's first value
+   * @param out The array to write the product to
+   * @param outOffset The index to write the product's first value to
+   */
+  public static void multiply(float[] a, int aOffset, float[] b, int bOffset, float[] out, int outOffset) {
+    float a00 = a[aOffset],    a10 = a[aOffset+1],  a20 = a[aOffset+2],  a30 = a[aOffset+3];
+    float a01 = a[aOffset+4],  a11 = a[aOffset+5],  a21 = a[aOffset+6],  a31 = a[aOffset+7];
+    float a02 = a[aOffset+8],  a12 = a[aOffset+9],  a22 = a[aOffset+10], a32 = a[aOffset+11];
+    float a03 = a[aOffset+12], a13 = a[aOffset+13], a23 = a[aOffset+14], a33 = a[aOffset+15];
+    for (int j=0; j<16; j+=4) {
+      float b0 = b[bOffset+j], b1 = b[bOffset+j+1], b2 = b[bOffset+j+2], b3 = b[bOffset+j+3];
+      out[outOffset+j]   = a00*b0 + a01*b1 + a02*b2 + a03*b3;
+      out[outOffset+j+1] = a10*b0 + a11*b1 + a12*b2 + a13*b3;
+      out[outOffset+j+2] = a20*b0 + a21*b1 + a22*b2 + a23*b3;
+      out[outOffset+j+3] = a30*b0 + a31*b1 + a32*b2 + a33*b3;
+    }
+  }
+
+  /**
+   * Transforms every point in xyz by m, treating each as (x,y,z,1).
+   * The w component is dropped, so m should be affine. out may be xyz.
+   *
+   * @param m The transformation
+   * @param xyz The points, packed x,y,z
+   * @param out The array to write the transformed points to
+   */
+  public static void transformPoints(Mat4 m, float[] xyz, float[] out) {
+    transformPoints(m, xyz, out, xyz.length/3);
+  }
+
+  public static void transformPoints(Mat4 m, float[] xyz, float[] out, int count) {
+    KERNEL.transformPoints(m.toFloatArrayForGLSL(), xyz, out, count);
+  }
+
+  /**
+   * Packs matrices into a batch array.
+   *
+   * @param matrices The matrices to pack
+   * @param dest The array to write them to, which needs room for matrices.length*16 floats
+   * @return  dest
+   */
+  public static float[] pack(Mat4[] matrices, float[] dest) {
+    for (int i=0; i<matrices.length; ++i) {
+      matrices[i].toFloatArrayForGLSL(dest, i*16);
+    }
+    return dest;
+  }
+
+  static final class ScalarKernel implements Kernel {
+
+    public void multiplyAll(float[] a, float[] b, float[] out, int count) {
+      for (int i=0; i<count*16; i+=16) {
+        multiply(a, i, b, i, out, i);
+      }
+    }
+
+    public void transformPoints(float[] m, float[] xyz, float[] out, int count) {
+      float m00 = m[0], m10 = m[1], m20 = m[2];
+      float m01 = m[4], m11 = m[5], m21 = m[6];
+      float m02 = m[8], m12 = m[9], m22 = m[10];
+      float m03 = m[12], m13 = m[13], m23 = m[14];
+      for (int i=0; i<count*3; i+=3) {
+        float x = xyz[i], y = xyz[i+1], z = xyz[i+2];
+        out[i]   = m00*x + m01*y + m02*z + m03;
+        out[i+1] = m10*x + m11*y + m12*z + m13;
+        out[i+2] = m20*x + m21*y + m22*z + m23;
+      }
+    }
+
+  }
+
+} // end of Mat4Batch class
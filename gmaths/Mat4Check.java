@@ -0,0 +1,122 @@
+package gmaths;
+
+/**
+ * Checks that Mat4's kind tags and specialised kernels agree with the general code.
+ * Every multiply and inverse is compared against the same values tagged PROJECTIVE,
+ * which always take the general path, and every tag is checked against the values it
+ * describes, including after transpose and set(r, c), which have to widen it.
+ * <p>
+ * Needs nothing but Java 8: run java -cp out gmaths.Mat4Check after any change to Mat4.
+ * It prints the number of checks made, or throws IllegalStateException at the first failure.
+ */
+
+public final class Mat4Check {
+
+  private static final float EPSILON = 1e-4f;
+
+  private int checks;
+
+  private Mat4Check() {
+  }
+
+  public static void main(String[] args) {
+    Mat4Check check = new Mat4Check();
+    check.run();
+    System.out.println("Mat4Check: "+check.checks+" checks passed");
+  }
+
+  private void run() {
+    Mat4 translation = Mat4Transform.translate(1.5f, 2, -3);
+    Mat4 scale = Mat4Transform.scale(0.4f, 3.7f, 0.4f);
+    Mat4 rigid = Mat4.multiply(Mat4Transform.translate(4, 0, 0), Mat4Transform.rotateAroundY(180));
+    Mat4 affine = Mat4.multiply(rigid, Mat4.multiply(scale, Mat4Transform.translate(0, 0.5f, 0)));
+    Mat4 projective = Mat4.multiply(Mat4Transform.perspective(45, 1024/768f), affine);
+    Mat4 composed = Mat4Transform.compose(new Vec3(1, 2, 3), Quat.rotateAroundX(30), new Vec3(2, 1, 0.5f));
+    Mat4[] inputs = {new Mat4(1), translation, scale, rigid, affine, projective, composed,
+        Mat4.transpose(translation), Mat4.transpose(scale), Mat4.transpose(rigid), Mat4.transpose(affine),
+        edited(translation, 0, 1, 0.3f), edited(scale, 1, 3, 2), edited(rigid, 3, 0, 0.1f)};
+    int[] expected = {Mat4.IDENTITY, Mat4.TRANSLATION, Mat4.SCALE, Mat4.RIGID, Mat4.AFFINE, Mat4.PROJECTIVE, Mat4.AFFINE};
+    for (int i=0; i<expected.length; i++) {
+      require(inputs[i].getKind() == expected[i], "expected kind "+expected[i]+", got", inputs[i]);
+    }
+    for (Mat4 m : inputs) {
+      require(tagFits(m), "kind "+m.getKind()+" is narrower than the values", m);
+      for (Mat4 other : inputs) {
+        agree(Mat4.multiply(m, other), Mat4.multiply(general(m), general(other)), "multiply", m);
+      }
+      agree(Mat4.inverse(m), Mat4.inverse(general(m)), "inverse", m);
+    }
+  }
+
+  // m with one value changed through set(r, c), which has to widen the kind
+  private static Mat4 edited(Mat4 m, int r, int c, float f) {
+    Mat4 e = new Mat4(m);
+    e.set(r, c, f);
+    return e;
+  }
+
+  // The same values tagged PROJECTIVE, so every operation on it takes the general path
+  private static Mat4 general(Mat4 m) {
+    Mat4 g = new Mat4(0);
+    for (int r=0; r<4; r++) {
+      for (int c=0; c<4; c++) {
+        g.set(r, c, m.get(r, c));
+      }
+    }
+    return g;
+  }
+
+  // Whether the values are of the kind m is tagged with (or a narrower one)
+  private static boolean tagFits(Mat4 m) {
+    int kind = m.getKind();
+    if (kind == Mat4.PROJECTIVE) {
+      return true;
+    }
+    boolean affine = m.get(3, 0) == 0 && m.get(3, 1) == 0 && m.get(3, 2) == 0 && m.get(3, 3) == 1;
+    if (kind == Mat4.AFFINE) {
+      return affine;
+    }
+    if (kind == Mat4.RIGID) {
+      for (int i=0; i<3; i++) {
+        for (int j=0; j<3; j++) {
+          float dot = m.get(0, i)*m.get(0, j) + m.get(1, i)*m.get(1, j) + m.get(2, i)*m.get(2, j);
+          if (Math.abs(dot-(i == j ? 1 : 0)) > EPSILON) {
+            return false;
+          }
+        }
+      }
+      return affine;
+    }
+    boolean diagonal = true;
+    for (int r=0; r<3; r++) {
+      for (int c=0; c<3; c++) {
+        diagonal &= r == c || m.get(r, c) == 0;
+      }
+    }
+    boolean unitDiagonal = m.get(0, 0) == 1 && m.get(1, 1) == 1 && m.get(2, 2) == 1;
+    boolean noTranslation = m.get(0, 3) == 0 && m.get(1, 3) == 0 && m.get(2, 3) == 0;
+    switch (kind) {
+      case Mat4.SCALE: return affine && diagonal && noTranslation;
+      case Mat4.TRANSLATION: return affine && diagonal && unitDiagonal;
+      default: return affine && diagonal && unitDiagonal && noTranslation;   // IDENTITY
+    }
+  }
+
+  private void agree(Mat4 fast, Mat4 general, String operation, Mat4 input) {
+    for (int r=0; r<4; r++) {
+      for (int c=0; c<4; c++) {
+        float tolerance = EPSILON*Math.max(1, Math.abs(general.get(r, c)));
+        require(Math.abs(fast.get(r, c)-general.get(r, c)) <= tolerance,
+            operation+" disagrees with the general path ("+fast+" should be "+general+") for", input);
+      }
+    }
+  }
+
+  private void require(boolean condition, String message, Mat4 input) {
+    checks++;
+    if (!condition) {
+      throw new IllegalStateException(message+" the kind "+input.getKind()+" matrix\n"+input);
+    }
+  }
+
+} // end of Mat4Check class
@@ -23,6 +23,17 @@ public final class Mat4Transform  {   // row column formulation
   public static Mat4 translate(Vec3 v) {
     return translate(v.x, v.y, v.z);
   }
+
+  /**
+   * Writes a 4x4 translation matrix into dest
+   * 
+   * @param v The translation amount (x,y,z)
+   * @param dest The matrix to overwrite
+   * @return  dest
+   */
+  public static Mat4 translate(Vec3 v, Mat4 dest) {
+    return translate(v.x, v.y, v.z, dest);
+  }
   
   /**
    * Creates a 4x4 translation matrix
@@ -33,10 +44,24 @@ public final class Mat4Transform  {   // row column formulation
    * @return  The resulting 4x4 translation matrix, as a Mat4
    */
    public static Mat4 translate(float tx, float ty, float tz) {
-    Mat4 m = new Mat4(1);
+    return translate(tx, ty, tz, new Mat4());
+  }
+
+  /**
+   * Writes a 4x4 translation matrix into dest
+   * 
+   * @param tx The translation amount for x
+   * @param ty The translation amount for y
+   * @param tz The translation amount for z
+   * @param dest The matrix to overwrite
+   * @return  dest
+   */
+  public static Mat4 translate(float tx, float ty, float tz, Mat4 dest) {
+    Mat4 m = dest.setIdentity();
     m.set(0,3, tx);
     m.set(1,3, ty);
     m.set(2,3, tz);
+    m.setKind(Mat4.TRANSLATION);
     return m;
   }
   
@@ -49,6 +74,17 @@ public final class Mat4Transform  {   // row column formulation
    public static Mat4 scale(Vec3 v) {
     return scale(v.x, v.y, v.z);
   }
+
+  /**
+   * Writes a 4x4 scale matrix into dest
+   * 
+   * @param v The scale amount (x,y,z)
+   * @param dest The matrix to overwrite
+   * @return  dest
+   */
+  public static Mat4 scale(Vec3 v, Mat4 dest) {
+    return scale(v.x, v.y, v.z, dest);
+  }
   
   /**
    * Creates a 4x4 scale matrix
@@ -59,10 +95,24 @@ public final class Mat4Transform  {   // row column formulation
    * @return  The resulting 4x4 scale matrix, as a Mat4
    */
    public static Mat4 scale(float sx, float sy, float sz) {
-    Mat4 m = new Mat4(1);
+    return scale(sx, sy, sz, new Mat4());
+  }
+
+  /**
+   * Writes a 4x4 scale matrix into dest
+   * 
+   * @param sx The scale amount for x
+   * @param sy The scale amount for y
+   * @param sz The scale amount for z
+   * @param dest The matrix to overwrite
+   * @return  dest
+   */
+  public static Mat4 scale(float sx, float sy, float sz, Mat4 dest) {
+    Mat4 m = dest.setIdentity();
     m.set(0,0, sx);
     m.set(1,1, sy);
     m.set(2,2, sz);
+    m.setKind(Mat4.SCALE);
     return m;
   }
 
@@ -73,12 +123,24 @@ public final class Mat4Transform  {   // row column formulation
    * @return  The resulting 4x4 rotation matrix, as a Mat4
    */
    public static Mat4 rotateAroundX(float angle) {   // angle in degrees
-    Mat4 m = new Mat4(1);
+    return rotateAroundX(angle, new Mat4());
+  }
+
+  /**
+   * Writes a 4x4 rotation matrix to rotate around the X axis into dest.
+   * 
+   * @param angle The amount of rotation in degrees. Positive values indicate anticlockwise rotation.
+   * @param dest The matrix to overwrite
+   * @return  dest
+   */
+  public static Mat4 rotateAroundX(float angle, Mat4 dest) {   // angle in degrees
+    Mat4 m = dest.setIdentity();
     angle = (float)(angle*Math.PI/180.0);
     m.set(1,1, (float)Math.cos(angle));
     m.set(1,2, -(float)Math.sin(angle));
     m.set(2,1, (float)Math.sin(angle));
     m.set(2,2, (float)Math.cos(angle));
+    m.setKind(Mat4.RIGID);
     return m;
   }
   
@@ -89,12 +151,24 @@ public final class Mat4Transform  {   // row column formulation
    * @return  The resulting 4x4 rotation matrix, as a Mat4
    */
    public static Mat4 rotateAroundY(float angle) {   // angle in degrees
-    Mat4 m = new Mat4(1);
+    return rotateAroundY(angle, new Mat4());
+  }
+
+  /**
+   * Writes a 4x4 rotation matrix to rotate around the Y axis into dest.
+   * 
+   * @param angle The amount of rotation in degrees. Positive values indicate anticlockwise rotation.
+   * @param dest The matrix to overwrite
+   * @return  dest
+   */
+  public static Mat4 rotateAroundY(float angle, Mat4 dest) {   // angle in degrees
+    Mat4 m = dest.setIdentity();
     angle = (float)(angle*Math.PI/180.0);
     m.set(0,0, (float)Math.cos(angle));
     m.set(0,2, (float)Math.sin(angle));
     m.set(2,0, -(float)Math.sin(angle));
     m.set(2,2, (float)Math.cos(angle));
+    m.setKind(Mat4.RIGID);
     return m;
   }
 
@@ -105,12 +179,74 @@ public final class Mat4Transform  {   // row column formulation
    * @return  The resulting 4x4 rotation matrix, as a Mat4
    */
    public static Mat4 rotateAroundZ(float angle) {   // angle in degrees
-    Mat4 m = new Mat4(1);
+    return rotateAroundZ(angle, new Mat4());
+  }
+
+  /**
+   * Writes a 4x4 rotation matrix to rotate around the Z axis into dest.
+   * 
+   * @param angle The amount of rotation in degrees. Positive values indicate anticlockwise rotation.
+   * @param dest The matrix to overwrite
+   * @return  dest
+   */
+  public static Mat4 rotateAroundZ(float angle, Mat4 dest) {   // angle in degrees
+    Mat4 m = dest.setIdentity();
     angle = (float)(angle*Math.PI/180.0);
     m.set(0,0, (float)Math.cos(angle));
     m.set(0,1, -(float)Math.sin(angle));
     m.set(1,0, (float)Math.sin(angle));
     m.set(1,1, (float)Math.cos(angle));
+    m.setKind(Mat4.RIGID);
+    return m;
+  }
+  
+  /**
+   * Creates a 4x4 matrix that scales, then rotates, then translates, i.e. translate x rotate x scale.
+   * This is built in one pass, without multiplying the three separate matrices.
+   * 
+   * @param translation The translation amount (x,y,z)
+   * @param rotation The rotation, as a unit quaternion
+   * @param scale The scale amount (x,y,z)
+   * @return  The resulting 4x4 matrix, as a Mat4
+   */
+  public static Mat4 compose(Vec3 translation, Quat rotation, Vec3 scale) {
+    return compose(translation, rotation, scale, new Mat4());
+  }
+
+  /**
+   * Writes a translate x rotate x scale matrix into dest.
+   * 
+   * @param translation The translation amount (x,y,z)
+   * @param rotation The rotation, as a unit quaternion
+   * @param scale The scale amount (x,y,z)
+   * @param dest The matrix to overwrite
+   * @return  dest
+   */
+  public static Mat4 compose(Vec3 translation, Quat rotation, Vec3 scale, Mat4 dest) {
+    float x = rotation.x, y = rotation.y, z = rotation.z, w = rotation.w;
+    float xx = x*x, yy = y*y, zz = z*z;
+    float xy = x*y, xz = x*z, yz = y*z;
+    float wx = w*x, wy = w*y, wz = w*z;
+    float sx = scale.x, sy = scale.y, sz = scale.z;
+    Mat4 m = dest.setIdentity();
+    m.set(0,0, (1-2*(yy+zz))*sx);
+    m.set(1,0, 2*(xy+wz)*sx);
+    m.set(2,0, 2*(xz-wy)*sx);
+    m.set(0,1, 2*(xy-wz)*sy);
+    m.set(1,1, (1-2*(xx+zz))*sy);
+    m.set(2,1, 2*(yz+wx)*sy);
+    m.set(0,2, 2*(xz+wy)*sz);
+    m.set(1,2, 2*(yz-wx)*sz);
+    m.set(2,2, (1-2*(xx+yy))*sz);
+    m.set(0,3, translation.x);
+    m.set(1,3, translation.y);
+    m.set(2,3, translation.z);
+    boolean noRotation = (x == 0 && y == 0 && z == 0);
+    boolean unitScale = (sx == 1 && sy == 1 && sz == 1);
+    boolean noTranslation = (translation.x == 0 && translation.y == 0 && translation.z == 0);
+    if (unitScale) m.setKind(noRotation ? Mat4.TRANSLATION : Mat4.RIGID);
+    else if (noRotation && noTranslation) m.setKind(Mat4.SCALE);
+    else m.setKind(Mat4.AFFINE);
     return m;
   }
   
@@ -135,12 +271,26 @@ public final class Mat4Transform  {   // row column formulation
    * @return  The resulting perspective matrix, as a Mat4
    */
    public static Mat4 perspective(float fov, float aspect, float near, float far) {
+    return perspective(fov, aspect, near, far, new Mat4());
+  }
+
+  /**
+   * Writes a perspective matrix into dest.
+   * 
+   * @param fov The field of view for the perspective. Default is 45f.
+   * @param aspect The aspect ratio of the display area, which equals width/height, where width and height are floating point values.
+   * @param near The distance of the near clip plane. Default is 0.1f;
+   * @param far The distance of the far clip plane. Default is 100f.
+   * @param dest The matrix to overwrite
+   * @return  dest
+   */
+  public static Mat4 perspective(float fov, float aspect, float near, float far, Mat4 dest) {
     float field = (float)Math.tan(Math.toRadians(fov*0.5f)); 
     float sx = 1/(field*aspect);
     float sy = 1/field;
     float sz = -(far+near)/(far-near);
     float pz = -(2*far*near)/(far-near);
-    Mat4 p = new Mat4(0);
+    Mat4 p = dest.setZero();
     p.set(0, 0, sx);
     p.set(1, 1, sy);
     p.set(2, 2, sz);
@@ -159,28 +309,46 @@ public final class Mat4Transform  {   // row column formulation
    * @return  The 4x4 viewing matrix, as a Mat4.
    */
    public static Mat4 lookAt(Vec3 from, Vec3 to, Vec3 worldup) {
-    Vec3 front = Vec3.subtract(to, from);
-    front.normalize();
-    Vec3 right = Vec3.crossProduct(front, worldup);
-    right.normalize();
-    Vec3 up = Vec3.crossProduct(right, front);
-    up.normalize();
-    Mat4 view = new Mat4(1);
-    view.set(0, 0, right.x);
-    view.set(0, 1, right.y);
-    view.set(0, 2, right.z);
-    view.set(1, 0, up.x);
-    view.set(1, 1, up.y);
-    view.set(1, 2, up.z);
-    view.set(2, 0, -front.x);
-    view.set(2, 1, -front.y);
-    view.set(2, 2, -front.z);
-    Mat4 cam = new Mat4(1);
-    cam.set(0, 3, -from.x);
-    cam.set(1, 3, -from.y);
-    cam.set(2, 3, -from.z);
-    Mat4 result = Mat4.multiply(view, cam);
-    return result;
+    return lookAt(from, to, worldup, new Mat4());
+  }
+
+  /**
+   * Writes a view matrix corresponding to a camera at a given position, looking at a particular target point, into dest.
+   * The temporary vectors come from the calling thread's Scratch pool, so nothing is allocated.
+   * 
+   * @param from The camera postion.
+   * @param to The target that the camera is looking at.
+   * @param worldup The up direction for the world. 
+   * @param dest The matrix to overwrite
+   * @return  dest
+   */
+  public static Mat4 lookAt(Vec3 from, Vec3 to, Vec3 worldup, Mat4 dest) {
+    Scratch scratch = Scratch.get();
+    scratch.push();
+    try {
+      Vec3 front = Vec3.subtract(to, from, scratch.vec3());
+      front.normalize();
+      Vec3 right = Vec3.crossProduct(front, worldup, scratch.vec3());
+      right.normalize();
+      Vec3 up = Vec3.crossProduct(right, front, scratch.vec3());
+      up.normalize();
+      Mat4 view = scratch.mat4().setIdentity();
+      view.set(0, 0, right.x);
+      view.set(0, 1, right.y);
+      view.set(0, 2, right.z);
+      view.set(1, 0, up.x);
+      view.set(1, 1, up.y);
+      view.set(1, 2, up.z);
+      view.set(2, 0, -front.x);
+      view.set(2, 1, -front.y);
+      view.set(2, 2, -front.z);
+      view.setKind(Mat4.RIGID);
+      Mat4 cam = translate(-from.x, -from.y, -from.z, scratch.mat4());
+      return Mat4.multiply(view, cam, dest);
+    }
+    finally {
+      scratch.pop();
+    }
   }
   
 } // end of class
\ No newline at end of file
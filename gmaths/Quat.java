@@ -0,0 +1,180 @@
+package gmaths;
+
+/**
+ * A class for a rotation quaternion.
+ * This includes four components: x, y, z (the vector part) and w (the scalar part).
+ * Angles are in degrees and rotations follow the same convention as Mat4Transform,
+ * so Quat.rotateAroundZ(a) and Mat4Transform.rotateAroundZ(a) describe the same rotation.
+ * Quaternions are combined like matrices: multiply(a, b) rotates by b first, then by a.
+ */
+
+public final class Quat {
+  public float x;
+  public float y;
+  public float z;
+  public float w;
+
+  /**
+   * Constructor. Creates the identity rotation.
+   */
+  public Quat() {
+    this(0,0,0,1);
+  }
+
+  public Quat(float x, float y, float z, float w) {
+    this.x = x;
+    this.y = y;
+    this.z = z;
+    this.w = w;
+  }
+
+  public Quat(Quat q) {
+    this(q.x, q.y, q.z, q.w);
+  }
+
+  public Quat set(float x, float y, float z, float w) {
+    this.x = x;
+    this.y = y;
+    this.z = z;
+    this.w = w;
+    return this;
+  }
+
+  public Quat set(Quat q) {
+    return set(q.x, q.y, q.z, q.w);
+  }
+
+  public Quat setIdentity() {
+    return set(0,0,0,1);
+  }
+
+  /**
+   * Creates a rotation around an axis.
+   *
+   * @param axis The axis of rotation. It does not need to be unit length.
+   * @param angle The amount of rotation in degrees. Positive values indicate anticlockwise rotation.
+   * @return  The resulting rotation, as a Quat
+   */
+  public static Quat fromAxisAngle(Vec3 axis, float angle) {
+    return fromAxisAngle(axis, angle, new Quat());
+  }
+
+  public static Quat fromAxisAngle(Vec3 axis, float angle, Quat dest) {
+    double half = Math.toRadians(angle)*0.5;
+    float s = (float)(Math.sin(half)/axis.magnitude());
+    return dest.set(axis.x*s, axis.y*s, axis.z*s, (float)Math.cos(half));
+  }
+
+  public static Quat rotateAroundX(float angle) {
+    return rotateAroundX(angle, new Quat());
+  }
+
+  public static Quat rotateAroundX(float angle, Quat dest) {
+    double half = Math.toRadians(angle)*0.5;
+    return dest.set((float)Math.sin(half), 0, 0, (float)Math.cos(half));
+  }
+
+  public static Quat rotateAroundY(float angle) {
+    return rotateAroundY(angle, new Quat());
+  }
+
+  public static Quat rotateAroundY(float angle, Quat dest) {
+    double half = Math.toRadians(angle)*0.5;
+    return dest.set(0, (float)Math.sin(half), 0, (float)Math.cos(half));
+  }
+
+  public static Quat rotateAroundZ(float angle) {
+    return rotateAroundZ(angle, new Quat());
+  }
+
+  public static Quat rotateAroundZ(float angle, Quat dest) {
+    double half = Math.toRadians(angle)*0.5;
+    return dest.set(0, 0, (float)Math.sin(half), (float)Math.cos(half));
+  }
+
+  public float magnitude() {
+    return (float)Math.sqrt(x*x+y*y+z*z+w*w);
+  }
+
+  public void normalize() {
+    float mag = magnitude();   // fails if mag = 0
+    x /= mag;
+    y /= mag;
+    z /= mag;
+    w /= mag;
+  }
+
+  public static float dotProduct(Quat a, Quat b) {
+    return a.x*b.x + a.y*b.y + a.z*b.z + a.w*b.w;
+  }
+
+  public static Quat multiply(Quat a, Quat b) {
+    return multiply(a, b, new Quat());
+  }
+
+  // dest may be a or b
+  public static Quat multiply(Quat a, Quat b, Quat dest) {
+    return dest.set(a.w*b.x + a.x*b.w + a.y*b.z - a.z*b.y,
+                    a.w*b.y - a.x*b.z + a.y*b.w + a.z*b.x,
+                    a.w*b.z + a.x*b.y - a.y*b.x + a.z*b.w,
+                    a.w*b.w - a.x*b.x - a.y*b.y - a.z*b.z);
+  }
+
+  /**
+   * Rotates a vector by this quaternion, which must be unit length.
+   *
+   * @param v The vector to rotate
+   * @param dest The vector to write the result to. It may be v.
+   * @return  dest
+   */
+  public Vec3 rotate(Vec3 v, Vec3 dest) {
+    // t = 2 * cross(q.xyz, v); v' = v + w*t + cross(q.xyz, t)
+    float tx = 2*(y*v.z - z*v.y);
+    float ty = 2*(z*v.x - x*v.z);
+    float tz = 2*(x*v.y - y*v.x);
+    return dest.set(v.x + w*tx + (y*tz - z*ty),
+                    v.y + w*ty + (z*tx - x*tz),
+                    v.z + w*tz + (x*ty - y*tx));
+  }
+
+  public static Quat slerp(Quat a, Quat b, float t) {
+    return slerp(a, b, t, new Quat());
+  }
+
+  /**
+   * Spherical linear interpolation between two unit quaternions, taking the shorter path.
+   *
+   * @param a The rotation at t = 0
+   * @param b The rotation at t = 1
+   * @param t The interpolation parameter in the range 0.0..1.0
+   * @param dest The quaternion to write the result to. It may be a or b.
+   * @return  dest
+   */
+  public static Quat slerp(Quat a, Quat b, float t, Quat dest) {
+    float bx = b.x, by = b.y, bz = b.z, bw = b.w;
+    float cos = dotProduct(a, b);
+    if (cos < 0) {   // q and -q are the same rotation, so go the short way round
+      cos = -cos;
+      bx = -bx; by = -by; bz = -bz; bw = -bw;
+    }
+    float wa, wb;
+    if (cos > 0.9995f) {   // nearly parallel: fall back to a normalised lerp
+      wa = 1-t;
+      wb = t;
+    }
+    else {
+      double theta = Math.acos(cos);
+      double sin = Math.sin(theta);
+      wa = (float)(Math.sin((1-t)*theta)/sin);
+      wb = (float)(Math.sin(t*theta)/sin);
+    }
+    dest.set(wa*a.x + wb*bx, wa*a.y + wb*by, wa*a.z + wb*bz, wa*a.w + wb*bw);
+    dest.normalize();
+    return dest;
+  }
+
+  public String toString() {
+    return "("+x+","+y+","+z+","+w+")";
+  }
+
+} // end of Quat class
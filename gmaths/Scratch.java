@@ -0,0 +1,97 @@
+package gmaths;
+
+/**
+ * A per-thread pool of temporary matrices, vectors and GLSL upload arrays.
+ * Objects handed out between push() and the matching pop() belong to the caller;
+ * after pop() they are reused, so they must not be kept. Their contents are
+ * undefined when handed out, so write them with one of the destination-passing
+ * methods (e.g. Mat4.multiply(a, b, dest)) before reading them.
+ *
+ * <pre>
+ *   Scratch scratch = Scratch.get();
+ *   scratch.push();
+ *   Mat4 mvp = Mat4.multiply(view, model, scratch.mat4());
+ *   ...
+ *   scratch.pop();
+ * </pre>
+ */
+
+public final class Scratch {
+
+  private static final ThreadLocal<Scratch> POOL = ThreadLocal.withInitial(Scratch::new);
+
+  private Mat4[] mat4s = new Mat4[8];
+  private Vec3[] vec3s = new Vec3[8];
+  private float[][] arrays = new float[8][];
+  private int mat4Count, vec3Count, arrayCount;
+
+  private int[] frames = new int[3*8];
+  private int depth;
+
+  private Scratch() {
+  }
+
+  /**
+   * @return The pool for the calling thread
+   */
+  public static Scratch get() {
+    return POOL.get();
+  }
+
+  /**
+   * Opens a frame. Everything taken from the pool until the matching pop() is released by it.
+   */
+  public void push() {
+    if (depth*3 == frames.length) {
+      frames = java.util.Arrays.copyOf(frames, frames.length*2);
+    }
+    frames[depth*3] = mat4Count;
+    frames[depth*3+1] = vec3Count;
+    frames[depth*3+2] = arrayCount;
+    depth++;
+  }
+
+  /**
+   * Closes the innermost frame, returning its objects to the pool.
+   */
+  public void pop() {
+    depth--;
+    mat4Count = frames[depth*3];
+    vec3Count = frames[depth*3+1];
+    arrayCount = frames[depth*3+2];
+  }
+
+  public Mat4 mat4() {
+    if (mat4Count == mat4s.length) {
+      mat4s = java.util.Arrays.copyOf(mat4s, mat4s.length*2);
+    }
+    if (mat4s[mat4Count] == null) {
+      mat4s[mat4Count] = new Mat4();
+    }
+    return mat4s[mat4Count++];
+  }
+
+  public Vec3 vec3() {
+    if (vec3Count == vec3s.length) {
+      vec3s = java.util.Arrays.copyOf(vec3s, vec3s.length*2);
+    }
+    if (vec3s[vec3Count] == null) {
+      vec3s[vec3Count] = new Vec3();
+    }
+    return vec3s[vec3Count++];
+  }
+
+  /**
+   * @return A float[16], sized for Mat4.toFloatArrayForGLSL(float[])
+   */
+  public float[] mat4Array() {
+    if (arrayCount == arrays.length) {
+      arrays = java.util.Arrays.copyOf(arrays, arrays.length*2);
+    }
+    if (arrays[arrayCount] == null) {
+      arrays[arrayCount] = new float[16];
+    }
+    return arrays[arrayCount++];
+  }
+
+} // end of Scratch class
@@ -23,6 +23,17 @@ public final class Vec3 {
     this.z = v.z;
   }
 
+  public Vec3 set(float x, float y, float z) {
+    this.x = x;
+    this.y = y;
+    this.z = z;
+    return this;
+  }
+
+  public Vec3 set(Vec3 v) {
+    return set(v.x, v.y, v.z);
+  }
+
   public float length() {
     return magnitude();
   }
@@ -43,8 +54,12 @@ public final class Vec3 {
   }
   
   public static Vec3 normalize(Vec3 v) {
+    return normalize(v, new Vec3());
+  }
+
+  public static Vec3 normalize(Vec3 v, Vec3 dest) {
     float mag = magnitude(v);   // fails if mag = 0
-    return new Vec3(v.x/mag, v.y/mag, v.z/mag);
+    return dest.set(v.x/mag, v.y/mag, v.z/mag);
   }
   
   public void add(Vec3 v) {
@@ -54,7 +69,11 @@ public final class Vec3 {
   }
 
   public static Vec3 add(Vec3 a, Vec3 b) {
-    return new Vec3(a.x+b.x, a.y+b.y, a.z+b.z);
+    return add(a, b, new Vec3());
+  }
+
+  public static Vec3 add(Vec3 a, Vec3 b, Vec3 dest) {
+    return dest.set(a.x+b.x, a.y+b.y, a.z+b.z);
   }
     
   public void subtract(Vec3 v) {
@@ -64,8 +83,12 @@ public final class Vec3 {
   }
   
   public static Vec3 subtract(Vec3 a, Vec3 b) {
-    return new Vec3(a.x-b.x, a.y-b.y, a.z-b.z);
-  } 
+    return subtract(a, b, new Vec3());
+  }
+
+  public static Vec3 subtract(Vec3 a, Vec3 b, Vec3 dest) {
+    return dest.set(a.x-b.x, a.y-b.y, a.z-b.z);
+  }
   
   public float dotProduct(Vec3 v) {
     return dotProduct(this, v);
@@ -82,11 +105,20 @@ public final class Vec3 {
   }
   
   public static Vec3 multiply(Vec3 v, float f) {
-    return new Vec3(v.x*f, v.y*f, v.z*f);
+    return multiply(v, f, new Vec3());
+  }
+
+  public static Vec3 multiply(Vec3 v, float f, Vec3 dest) {
+    return dest.set(v.x*f, v.y*f, v.z*f);
   }
   
   public static Vec3 crossProduct(Vec3 a, Vec3 b) {
-    return new Vec3(a.y*b.z-a.z*b.y, a.z*b.x-a.x*b.z, a.x*b.y-a.y*b.x);
+    return crossProduct(a, b, new Vec3());
+  }
+
+  // dest may be a or b
+  public static Vec3 crossProduct(Vec3 a, Vec3 b, Vec3 dest) {
+    return dest.set(a.y*b.z-a.z*b.y, a.z*b.x-a.x*b.z, a.x*b.y-a.y*b.x);
   }
  
   public String toString() {
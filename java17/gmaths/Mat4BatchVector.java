@@ -0,0 +1,61 @@
+package gmaths;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The Mat4Batch kernel for JDK 17+, built on the jdk.incubator.vector API.
+ * A column of a 4x4 matrix is one 128-bit vector, so each column of a product
+ * is four fused multiply-adds of whole columns.
+ * <p>
+ * This file is not part of the Java 8 build. Compile it with JDK 17+ into the
+ * same output directory as the rest of gmaths (or into META-INF/versions/17 of a
+ * multi-release jar) and run with --add-modules jdk.incubator.vector:
+ * <pre>
+ *   javac --release 17 --add-modules jdk.incubator.vector -cp out -d out java17/gmaths/Mat4BatchVector.java
+ * </pre>
+ * Mat4Batch finds it by name and falls back to its scalar kernel when it is absent.
+ */
+
+final class Mat4BatchVector implements Mat4Batch.Kernel {
+
+  private static final VectorSpecies<Float> COLUMN = FloatVector.SPECIES_128;
+  private static final VectorMask<Float> XYZ = VectorMask.fromLong(COLUMN, 0b0111);
+
+  public void multiplyAll(float[] a, float[] b, float[] out, int count) {
+    for (int i=0; i<count*16; i+=16) {
+      FloatVector a0 = FloatVector.fromArray(COLUMN, a, i);
+      FloatVector a1 = FloatVector.fromArray(COLUMN, a, i+4);
+      FloatVector a2 = FloatVector.fromArray(COLUMN, a, i+8);
+      FloatVector a3 = FloatVector.fromArray(COLUMN, a, i+12);
+      // Read the whole of b[i] before writing, so out may be b
+      float b00 = b[i],    b10 = b[i+1],  b20 = b[i+2],  b30 = b[i+3];
+      float b01 = b[i+4],  b11 = b[i+5],  b21 = b[i+6],  b31 = b[i+7];
+      float b02 = b[i+8],  b12 = b[i+9],  b22 = b[i+10], b32 = b[i+11];
+      float b03 = b[i+12], b13 = b[i+13], b23 = b[i+14], b33 = b[i+15];
+      column(a0, a1, a2, a3, b00, b10, b20, b30).intoArray(out, i);
+      column(a0, a1, a2, a3, b01, b11, b21, b31).intoArray(out, i+4);
+      column(a0, a1, a2, a3, b02, b12, b22, b32).intoArray(out, i+8);
+      column(a0, a1, a2, a3, b03, b13, b23, b33).intoArray(out, i+12);
+    }
+  }
+
+  private static FloatVector column(FloatVector a0, FloatVector a1, FloatVector a2, FloatVector a3,
+                                    float b0, float b1, float b2, float b3) {
+    return a0.mul(b0).add(a1.mul(b1)).add(a2.mul(b2)).add(a3.mul(b3));
+  }
+
+  public void transformPoints(float[] m, float[] xyz, float[] out, int count) {
+    FloatVector c0 = FloatVector.fromArray(COLUMN, m, 0);
+    FloatVector c1 = FloatVector.fromArray(COLUMN, m, 4);
+    FloatVector c2 = FloatVector.fromArray(COLUMN, m, 8);
+    FloatVector c3 = FloatVector.fromArray(COLUMN, m, 12);
+    for (int i=0; i<count*3; i+=3) {
+      float x = xyz[i], y = xyz[i+1], z = xyz[i+2];
+      // The masked store leaves the next point's x alone
+      c0.mul(x).add(c1.mul(y)).add(c2.mul(z)).add(c3).intoArray(out, i, XYZ);
+    }
+  }
+
+}
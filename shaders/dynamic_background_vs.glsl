@@ -10,13 +10,14 @@ out vec2 aTexCoord;
 out vec2 movingTexCoord;
 
 uniform mat4 model;
-uniform mat4 mvpMatrix;
+#include "include/camera.glsl"
 
 uniform vec2 offset;
 
 void main() {
-  gl_Position = mvpMatrix * vec4(position, 1.0);
-  aPos = vec3(model*vec4(position, 1.0f));
+  vec4 worldPos = model*vec4(position, 1.0);
+  gl_Position = viewProjection * worldPos;
+  aPos = vec3(worldPos);
   mat4 normalMatrix = transpose(inverse(model));
   vec3 norm = normalize(normal);
   aNormal = mat3(normalMatrix) * norm;
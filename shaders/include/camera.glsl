@@ -0,0 +1,7 @@
+// Shared by every program and filled when the camera changes, see CameraBuffer
+layout(std140) uniform Camera {
+    mat4 view;
+    mat4 projection;
+    mat4 viewProjection;
+    vec3 viewPos;
+};
@@ -0,0 +1,133 @@
+// The lighting shared by new_fs, egg_fs and window_fs. Each program is compiled for its
+// features, given as #defines (see Shader.getVariant), so the light loops have constant
+// bounds and the features a program doesn't use are not compiled in:
+//   NR_WORLD_LIGHTS  the world lights to add, up to 2 (default 2)
+//   NR_SPOT_LIGHTS   the spot lights to add, up to 2, 0 for none (default 2)
+//   SPOT_CONE        spot lights only light inside their cone, with soft edges
+//   SPECULAR_MAP     the specular colour comes from second_texture
+//   ALPHA_TEST       texels with an alpha below 0.1 are discarded
+
+#ifndef NR_WORLD_LIGHTS
+#define NR_WORLD_LIGHTS 2
+#endif
+#ifndef NR_SPOT_LIGHTS
+#define NR_SPOT_LIGHTS 2
+#endif
+
+in vec3 aPos;
+in vec3 aNormal;
+in vec2 aTexCoord;
+
+out vec4 fragColor;
+
+uniform sampler2D first_texture;
+#ifdef SPECULAR_MAP
+uniform sampler2D second_texture;
+#endif
+
+#include "camera.glsl"
+#include "structs.glsl"
+
+// Shared by every program and filled once per frame, see LightingBuffer
+layout(std140) uniform Lighting {
+    Light worldLights[2];
+    SpotLight SpotLights[2];
+};
+
+uniform Material material;
+
+vec3 CalcWorldLight(Light worldLight, vec3 normal, vec3 fragPos, vec3 viewDir, vec3 texel)
+{
+    /*
+     * Calculate the affect of a world light on this particular fragment
+     */
+
+    // ambient
+    vec3 ambient = worldLight.ambient * material.ambient * texel;
+
+    // diffuse
+    vec3 lightDir = normalize(worldLight.position - fragPos);
+    float diff = max(dot(normal, lightDir), 0.0);
+    vec3 diffuse = worldLight.diffuse * (diff * material.diffuse) * texel;
+
+    // specular
+    vec3 reflectDir = reflect(-lightDir, normal);
+    float spec = pow(max(dot(viewDir, reflectDir), 0.0), material.shininess);
+#ifdef SPECULAR_MAP
+    vec3 specular = worldLight.specular * (spec * texture(second_texture, aTexCoord).rgb);
+#else
+    vec3 specular = worldLight.specular * (spec * material.specular);
+#endif
+
+    return (ambient + diffuse + specular);
+}
+
+#if NR_SPOT_LIGHTS > 0
+vec3 CalcSpotLight(SpotLight light, vec3 normal, vec3 fragPos, vec3 viewDir, vec3 texel)
+{
+    /*
+     * Calculate the affect of a spot light on this particular fragment
+     */
+    vec3 lightDir = normalize(light.position - fragPos);
+
+    // ambient
+    vec3 ambient = light.ambient * material.ambient * texel;
+
+    // diffuse
+    float diff = max(dot(normal, lightDir), 0.0);
+
+    // specular
+    vec3 reflectDir = reflect(-lightDir, normal);
+    float spec = pow(max(dot(viewDir, reflectDir), 0.0), material.shininess);
+
+#ifdef SPECULAR_MAP
+    vec3 diffuse = light.diffuse * diff * material.diffuse;
+    vec3 specular = light.specular * spec * texture(second_texture, aTexCoord).rgb;
+#else
+    vec3 diffuse = light.diffuse * diff * material.diffuse * texel;
+    vec3 specular = light.specular * spec * material.specular * texel;
+#endif
+
+#ifdef SPOT_CONE
+    // spotlight (soft edges)
+    float theta = dot(lightDir, normalize(-light.direction));
+    float epsilon = (light.cutOff - light.outerCutOff);
+    float intensity = clamp((theta - light.outerCutOff) / epsilon, 0.0, 1.0);
+    diffuse  *= intensity;
+    specular *= intensity;
+#endif
+
+    // attenuation
+    float distance    = length(light.position - fragPos);
+    float attenuation = 1.0 / (light.constant + light.linear * distance + light.quadratic * (distance * distance));
+    return (ambient + diffuse + specular) * attenuation;
+}
+#endif
+
+
+void main() {
+
+    vec4 texColor = texture(first_texture, aTexCoord);
+#ifdef ALPHA_TEST
+    if(texColor.a < 0.1)
+        discard;
+#endif
+
+    vec3 viewDir = normalize(viewPos - aPos);
+    vec3 norm = normalize(aNormal);
+    vec3 result = vec3(0,0.0,0);
+
+    //Go through each world light
+    for(int i = 0; i < NR_WORLD_LIGHTS; i++){
+        result += CalcWorldLight(worldLights[i], norm, aPos, viewDir, texColor.rgb);
+    }
+
+#if NR_SPOT_LIGHTS > 0
+    // Go though our spot lights
+    for(int i = 0; i < NR_SPOT_LIGHTS; i++){
+        result += CalcSpotLight(SpotLights[i], norm, aPos, viewDir, texColor.rgb);
+    }
+#endif
+
+    fragColor = vec4(result, 1.0);
+}
@@ -2,8 +2,10 @@
 
 layout (location = 0) in vec3 position;
 
-uniform mat4 mvpMatrix;
+uniform mat4 model;
+
+#include "include/camera.glsl"
 
 void main() {
-    gl_Position = mvpMatrix * vec4(position, 1.0);
+    gl_Position = viewProjection * model * vec4(position, 1.0);
 }
\ No newline at end of file
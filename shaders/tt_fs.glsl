@@ -7,41 +7,29 @@ in vec2 aTexCoord;
 out vec4 fragColor;
 
 uniform sampler2D first_texture;
-uniform vec3 viewPos;
+#include "include/camera.glsl"
+#include "include/structs.glsl"
 
-struct Light {
-  vec3 position;
-  vec3 ambient;
-  vec3 diffuse;
-  vec3 specular;
-};
+// the sun
+uniform Light worldLights[1];
 
-uniform Light light;  
-
-struct Material {
-  vec3 ambient;
-  vec3 diffuse;
-  vec3 specular;
-  float shininess;
-}; 
-  
 uniform Material material;
 
 void main() {
   // ambient
-  vec3 ambient = light.ambient * material.ambient * texture(first_texture, aTexCoord).rgb;
+  vec3 ambient = worldLights[0].ambient * material.ambient * texture(first_texture, aTexCoord).rgb;
   
   // diffuse
   vec3 norm = normalize(aNormal);
-  vec3 lightDir = normalize(light.position - aPos);  
+  vec3 lightDir = normalize(worldLights[0].position - aPos);  
   float diff = max(dot(norm, lightDir), 0.0);
-  vec3 diffuse = light.diffuse * (diff * material.diffuse) * texture(first_texture, aTexCoord).rgb;
+  vec3 diffuse = worldLights[0].diffuse * (diff * material.diffuse) * texture(first_texture, aTexCoord).rgb;
   
   // specular 
   vec3 viewDir = normalize(viewPos - aPos);
   vec3 reflectDir = reflect(-lightDir, norm);  
   float spec = pow(max(dot(viewDir, reflectDir), 0.0), material.shininess);
-  vec3 specular = light.specular * (spec * material.specular);
+  vec3 specular = worldLights[0].specular * (spec * material.specular);
 
   vec3 result = ambient + diffuse + specular;
   fragColor = vec4(result, 1.0);
@@ -0,0 +1,23 @@
+#version 330 core
+
+layout (location = 0) in vec3 position;
+layout (location = 1) in vec3 normal;
+layout (location = 2) in vec2 texCoord;
+layout (location = 3) in mat4 model;   // per instance, uses locations 3 to 6
+
+out vec3 aPos;
+out vec3 aNormal;
+out vec2 aTexCoord;
+
+#include "include/camera.glsl"
+
+void main() {
+  vec4 worldPos = model*vec4(position, 1.0);
+  gl_Position = viewProjection * worldPos;
+  aPos = vec3(worldPos);
+  mat4 normalMatrix = transpose(inverse(model));
+  vec3 norm = normalize(normal);
+  aNormal = mat3(normalMatrix) * norm;
+
+  aTexCoord = texCoord;
+}